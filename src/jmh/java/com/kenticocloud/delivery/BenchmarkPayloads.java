@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Builds Delivery API payloads of any size out of the responses recorded in the test resources.
+ */
+final class BenchmarkPayloads {
+
+    static final String LISTING_WITH_MODULAR_CONTENT = "SampleContentItemListWithModularContent.json";
+
+    private BenchmarkPayloads() {
+        //Static helpers only
+    }
+
+    /**
+     * Creates an {@link ObjectMapper} configured the way {@link DeliveryClient} configures its own.
+     * @return the object mapper
+     */
+    static ObjectMapper newObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JSR310Module());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+
+    /**
+     * Scales a recorded listing to the given number of items by repeating its items under unique codenames.  The
+     * modular content is shared by all copies, as it would be in a real response.
+     * @param objectMapper The object mapper to read and write the payload with
+     * @param resource The name of the recorded listing
+     * @param itemCount The number of items of the scaled listing
+     * @return the serialized listing
+     * @throws IOException Thrown if the recorded listing cannot be read
+     */
+    static byte[] scaleListing(ObjectMapper objectMapper, String resource, int itemCount) throws IOException {
+        ObjectNode listing;
+        try (InputStream inputStream = BenchmarkPayloads.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException(String.format("Missing recorded payload %s", resource));
+            }
+            listing = (ObjectNode) objectMapper.readTree(inputStream);
+        }
+        ArrayNode recorded = (ArrayNode) listing.get("items");
+        ArrayNode items = objectMapper.createArrayNode();
+        for (int i = 0; i < itemCount; i++) {
+            ObjectNode item = recorded.get(i % recorded.size()).deepCopy();
+            ObjectNode system = (ObjectNode) item.get("system");
+            if (i >= recorded.size()) {
+                system.put("codename", String.format("%s_%d", system.get("codename").asText(), i));
+            }
+            items.add(item);
+        }
+        listing.set("items", items);
+        ObjectNode pagination = (ObjectNode) listing.get("pagination");
+        pagination.put("limit", itemCount);
+        pagination.put("count", itemCount);
+        return objectMapper.writeValueAsBytes(listing);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.kenticocloud.delivery.template.TemplateEngineConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages a content items listing goes through after it is downloaded: deserialization, conversion to
+ * strongly typed models, rich text link and inline content item resolution, and rendering inline content items with
+ * Thymeleaf templates.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler reports the allocation rate of every stage next to its throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentItemsListingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param({"32", "1000"})
+        int itemCount;
+
+        ObjectReader listingReader;
+        byte[] json;
+        ContentItemsListingResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            ObjectMapper objectMapper = BenchmarkPayloads.newObjectMapper();
+            listingReader = objectMapper.readerFor(ContentItemsListingResponse.class);
+            json = BenchmarkPayloads.scaleListing(
+                    objectMapper, BenchmarkPayloads.LISTING_WITH_MODULAR_CONTENT, itemCount);
+            StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+            converter.registerType(Article.class);
+            response = listingReader.readValue(json);
+            response.setStronglyTypedContentItemConverter(converter);
+        }
+    }
+
+    /**
+     * Rich text is resolved in place, so every invocation gets a freshly parsed listing.  Invocation level setup is
+     * only sound for invocations taking well over a millisecond, which processing a whole listing does.
+     */
+    @State(Scope.Thread)
+    public static class RichText {
+
+        StronglyTypedContentItemConverter resolvingConverter;
+        StronglyTypedContentItemConverter templateConverter;
+        RichTextElementConverter linksAndInlineResolvers;
+        RichTextElementConverter thymeleafTemplates;
+        ContentItemsListingResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            resolvingConverter = new StronglyTypedContentItemConverter();
+            resolvingConverter.registerType(HostedVideo.class);
+            resolvingConverter.registerType(Tweet.class);
+            resolvingConverter.registerInlineContentItemsResolver(new HostedVideoResolver());
+            resolvingConverter.registerInlineContentItemsResolver(new TweetResolver());
+            linksAndInlineResolvers = new RichTextElementConverter(
+                    link -> String.format("/%s/%s", link.getType(), link.getUrlSlug()),
+                    () -> "/404",
+                    null,
+                    null,
+                    resolvingConverter);
+
+            //No inline resolvers registered, so every inline content item goes to the Thymeleaf templates
+            templateConverter = new StronglyTypedContentItemConverter();
+            TemplateEngineConfig templateEngineConfig = new TemplateEngineConfig();
+            templateEngineConfig.init();
+            thymeleafTemplates = new RichTextElementConverter(
+                    link -> String.format("/%s/%s", link.getType(), link.getUrlSlug()),
+                    () -> "/404",
+                    null,
+                    templateEngineConfig,
+                    templateConverter);
+        }
+
+        @Setup(Level.Invocation)
+        public void parse(Payload payload) throws IOException {
+            response = payload.listingReader.readValue(payload.json);
+        }
+    }
+
+    @Benchmark
+    public ContentItemsListingResponse deserialize(Payload payload) throws IOException {
+        return payload.listingReader.readValue(payload.json);
+    }
+
+    @Benchmark
+    public List<Article> castTo(Payload payload) {
+        return payload.response.castTo(Article.class);
+    }
+
+    @Benchmark
+    public List<ContentItem> resolveRichText(RichText richText) {
+        richText.response.setStronglyTypedContentItemConverter(richText.resolvingConverter);
+        List<ContentItem> items = richText.response.getItems();
+        richText.linksAndInlineResolvers.process(items);
+        return items;
+    }
+
+    @Benchmark
+    public List<ContentItem> renderThymeleafTemplates(RichText richText) {
+        richText.response.setStronglyTypedContentItemConverter(richText.templateConverter);
+        List<ContentItem> items = richText.response.getItems();
+        richText.thymeleafTemplates.process(items);
+        return items;
+    }
+
+    /**
+     * Related articles nest until the recursion runs out of unvisited modular content.
+     */
+    @ContentItemMapping("article")
+    public static class Article {
+
+        String title;
+        String summary;
+        ZonedDateTime postDate;
+        List<Asset> teaserImage;
+        @ContentItemMapping("related_articles")
+        List<Article> relatedArticles;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public void setSummary(String summary) {
+            this.summary = summary;
+        }
+
+        public ZonedDateTime getPostDate() {
+            return postDate;
+        }
+
+        public void setPostDate(ZonedDateTime postDate) {
+            this.postDate = postDate;
+        }
+
+        public List<Asset> getTeaserImage() {
+            return teaserImage;
+        }
+
+        public void setTeaserImage(List<Asset> teaserImage) {
+            this.teaserImage = teaserImage;
+        }
+
+        public List<Article> getRelatedArticles() {
+            return relatedArticles;
+        }
+
+        public void setRelatedArticles(List<Article> relatedArticles) {
+            this.relatedArticles = relatedArticles;
+        }
+    }
+
+    @ContentItemMapping("hosted_video")
+    public static class HostedVideo {
+
+        String videoId;
+
+        public String getVideoId() {
+            return videoId;
+        }
+
+        public void setVideoId(String videoId) {
+            this.videoId = videoId;
+        }
+    }
+
+    @ContentItemMapping("tweet")
+    public static class Tweet {
+
+        String tweetLink;
+
+        public String getTweetLink() {
+            return tweetLink;
+        }
+
+        public void setTweetLink(String tweetLink) {
+            this.tweetLink = tweetLink;
+        }
+    }
+
+    public static class HostedVideoResolver extends InlineContentItemsResolver<HostedVideo> {
+        @Override
+        public String resolve(HostedVideo data) {
+            return String.format("<iframe src=\"https://player.vimeo.com/video/%s\"></iframe>", data.getVideoId());
+        }
+    }
+
+    public static class TweetResolver extends InlineContentItemsResolver<Tweet> {
+        @Override
+        public String resolve(Tweet data) {
+            return String.format("<blockquote class=\"twitter-tweet\"><a href=\"%s\"></a></blockquote>",
+                    data.getTweetLink());
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link HttpTransport} backed by Apache HttpClient, used by {@link DeliveryClient} unless another transport is set.
+ * <p>
+ * Blocking requests go through a pooled {@link CloseableHttpClient}.  Asynchronous requests go through a
+ * {@link CloseableHttpAsyncClient} with a connection pool of its own, created on first use.  Pool sizes, timeouts,
+ * keep-alive, idle connection eviction and TLS settings are taken from the {@link DeliveryOptions}.
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+    private final DeliveryOptions deliveryOptions;
+    private final SSLContext sslContext;
+    private final PoolingHttpClientConnectionManager connManager;
+    private final CloseableHttpClient httpClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnManager;
+    private volatile CloseableHttpAsyncClient asyncHttpClient;
+    private volatile ScheduledExecutorService idleConnectionEvictor;
+    private volatile DeliveryMetricsListener metricsListener = DeliveryClient.NO_OP_METRICS_LISTENER;
+    //The endpoint of the blocking request being executed on this thread, for reporting connection lease times
+    private final ThreadLocal<String> currentEndpoint = new ThreadLocal<>();
+
+    /**
+     * Constructs a transport configured by the given options.
+     * @param deliveryOptions The options to take the connection settings from
+     */
+    public ApacheHttpTransport(DeliveryOptions deliveryOptions) {
+        this.deliveryOptions = deliveryOptions;
+        sslContext = createSslContext();
+        connManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new SSLConnectionSocketFactory(sslContext))
+                        .build()) {
+            @Override
+            public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                ConnectionRequest connectionRequest = super.requestConnection(route, state);
+                DeliveryMetricsListener listener = metricsListener;
+                String endpoint = currentEndpoint.get();
+                if (listener == DeliveryClient.NO_OP_METRICS_LISTENER || endpoint == null) {
+                    return connectionRequest;
+                }
+                return new TimedConnectionRequest(connectionRequest, listener, endpoint);
+            }
+        };
+        connManager.setMaxTotal(deliveryOptions.getMaxConnections());
+        connManager.setDefaultMaxPerRoute(deliveryOptions.getMaxConnectionsPerRoute());
+        HttpClientBuilder httpClientBuilder = HttpClients.custom()
+                .setConnectionManager(connManager)
+                //Content-Encoding is negotiated and decoded by DeliveryClient for every transport
+                .disableContentCompression()
+                .setDefaultRequestConfig(buildRequestConfig())
+                .setKeepAliveStrategy(this::getKeepAliveDuration);
+        if (deliveryOptions.getMaxIdleMillis() > 0) {
+            httpClientBuilder
+                    .evictExpiredConnections()
+                    .evictIdleConnections(deliveryOptions.getMaxIdleMillis(), TimeUnit.MILLISECONDS);
+        }
+        httpClient = httpClientBuilder.build();
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        if (metricsListener == DeliveryClient.NO_OP_METRICS_LISTENER) {
+            return httpClient.execute(request);
+        }
+        currentEndpoint.set(DeliveryClient.getEndpoint(request.getURI()));
+        try {
+            return httpClient.execute(request);
+        } finally {
+            currentEndpoint.remove();
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        CloseableHttpAsyncClient client;
+        try {
+            client = getAsyncHttpClient();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        Future<HttpResponse> execution = client.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        //Cancelling the returned future aborts the exchange and releases its connection
+        future.whenComplete((response, e) -> {
+            if (future.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections, both in total and per route, on both connection pools.
+     * @param maxConnections The maximum number of connections
+     */
+    public void setMaxConnections(int maxConnections) {
+        connManager.setMaxTotal(maxConnections);
+        connManager.setDefaultMaxPerRoute(maxConnections);
+        PoolingNHttpClientConnectionManager manager = asyncConnManager;
+        if (manager != null) {
+            manager.setMaxTotal(maxConnections);
+            manager.setDefaultMaxPerRoute(maxConnections);
+        }
+    }
+
+    /**
+     * Gets live statistics of the connection pool used by blocking requests.
+     * @return The numbers of leased, available and pending connections, and the maximum number of connections
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connManager.getTotalStats();
+    }
+
+    /**
+     * Gets live statistics of the connection pool used by asynchronous requests.
+     * @return The numbers of leased, available and pending connections, and the maximum number of connections
+     */
+    public PoolStats getAsyncConnectionPoolStats() {
+        PoolingNHttpClientConnectionManager manager = asyncConnManager;
+        if (manager == null) {
+            return new PoolStats(0, 0, 0, connManager.getMaxTotal());
+        }
+        return manager.getTotalStats();
+    }
+
+    /**
+     * Releases the connection pools and I/O threads held by this transport.
+     * @throws IOException Thrown if an underlying HTTP client fails to shut down cleanly
+     */
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+        CloseableHttpAsyncClient client = asyncHttpClient;
+        if (client != null) {
+            client.close();
+        }
+        ScheduledExecutorService evictor = idleConnectionEvictor;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the listener notified of how long blocking requests waited for a pooled connection.
+     * {@link DeliveryClient#setMetricsListener(DeliveryMetricsListener)} sets it on the transport in use.
+     * @param metricsListener The listener to notify, or null to stop timing connection leases
+     */
+    public void setMetricsListener(DeliveryMetricsListener metricsListener) {
+        this.metricsListener = metricsListener == null ? DeliveryClient.NO_OP_METRICS_LISTENER : metricsListener;
+    }
+
+    private CloseableHttpAsyncClient getAsyncHttpClient() throws IOException {
+        CloseableHttpAsyncClient client = asyncHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncHttpClient;
+                if (client == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadFactory threadFactory = runnable -> {
+                        //Daemon threads, so an unclosed client does not keep the JVM alive
+                        Thread thread = new Thread(runnable, "kentico-delivery-io-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+                    ConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(
+                            IOReactorConfig.custom()
+                                    .setConnectTimeout(deliveryOptions.getConnectTimeoutMillis())
+                                    .setSoTimeout(deliveryOptions.getSocketTimeoutMillis())
+                                    .build(),
+                            threadFactory);
+                    PoolingNHttpClientConnectionManager manager = new PoolingNHttpClientConnectionManager(
+                            ioReactor,
+                            RegistryBuilder.<SchemeIOSessionStrategy>create()
+                                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                                    .register("https", new SSLIOSessionStrategy(sslContext))
+                                    .build());
+                    manager.setMaxTotal(connManager.getMaxTotal());
+                    manager.setDefaultMaxPerRoute(connManager.getDefaultMaxPerRoute());
+                    client = HttpAsyncClients.custom()
+                            .setConnectionManager(manager)
+                            .setDefaultRequestConfig(buildRequestConfig())
+                            .setKeepAliveStrategy(this::getKeepAliveDuration)
+                            .setThreadFactory(threadFactory)
+                            .build();
+                    client.start();
+                    long maxIdleMillis = deliveryOptions.getMaxIdleMillis();
+                    if (maxIdleMillis > 0) {
+                        //HttpAsyncClientBuilder has no idle connection evictor of its own
+                        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                            Thread thread = new Thread(runnable, "kentico-delivery-idle-connection-evictor");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                        evictor.scheduleWithFixedDelay(() -> {
+                            manager.closeExpiredConnections();
+                            manager.closeIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS);
+                        }, maxIdleMillis, maxIdleMillis, TimeUnit.MILLISECONDS);
+                        idleConnectionEvictor = evictor;
+                    }
+                    asyncConnManager = manager;
+                    asyncHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private SSLContext createSslContext() {
+        SSLContext context = deliveryOptions.getSslContext();
+        if (context == null) {
+            //A context of our own, so tuning its session cache does not affect the rest of the JVM
+            context = SSLContexts.createDefault();
+        }
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        if (sessionContext != null) {
+            if (deliveryOptions.getTlsSessionCacheSize() > 0) {
+                sessionContext.setSessionCacheSize(deliveryOptions.getTlsSessionCacheSize());
+            }
+            if (deliveryOptions.getTlsSessionTimeoutSeconds() > 0) {
+                sessionContext.setSessionTimeout(deliveryOptions.getTlsSessionTimeoutSeconds());
+            }
+        }
+        return context;
+    }
+
+    private RequestConfig buildRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(deliveryOptions.getConnectTimeoutMillis())
+                .setSocketTimeout(deliveryOptions.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(deliveryOptions.getConnectionRequestTimeoutMillis())
+                .build();
+    }
+
+    private long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        long maxKeepAlive = deliveryOptions.getKeepAliveMillis();
+        if (maxKeepAlive < 0) {
+            return serverKeepAlive;
+        }
+        return serverKeepAlive < 0 ? maxKeepAlive : Math.min(serverKeepAlive, maxKeepAlive);
+    }
+
+    private static class TimedConnectionRequest implements ConnectionRequest {
+
+        private final ConnectionRequest delegate;
+        private final DeliveryMetricsListener metricsListener;
+        private final String endpoint;
+
+        TimedConnectionRequest(ConnectionRequest delegate, DeliveryMetricsListener metricsListener, String endpoint) {
+            this.delegate = delegate;
+            this.metricsListener = metricsListener;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+            long start = java.lang.System.nanoTime();
+            HttpClientConnection connection = delegate.get(timeout, timeUnit);
+            metricsListener.onConnectionLeased(endpoint, java.lang.System.nanoTime() - start);
+            return connection;
+        }
+
+        @Override
+        public boolean cancel() {
+            return delegate.cancel();
+        }
+    }
+}
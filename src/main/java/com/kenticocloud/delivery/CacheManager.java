@@ -27,8 +27,64 @@ package com.kenticocloud.delivery;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Resolves the requests of a {@link DeliveryClient}, from a cache or through the {@link HttpRequestExecutor} it is
+ * handed.
+ * <p>
+ * Runtime exceptions thrown by the executor, and futures it completes exceptionally with one, should reach the caller
+ * unchanged or as the cause of the exception thrown.  Decorators such as {@link CoalescingCacheManager} abort a
+ * resolution this way, and do not work with a cache which swallows them.
+ */
 public interface CacheManager {
 
     JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException;
+
+    /**
+     * Resolves a request on behalf of the asynchronous methods of the {@link DeliveryClient}.
+     * <p>
+     * The default implementation delegates to {@link #resolveRequest(String, HttpRequestExecutor)} on the calling
+     * thread, so a cache miss blocks until the response is retrieved.  Implementations which want to stay
+     * non-blocking should override this and use {@link HttpRequestExecutor#executeAsync()} on a miss.
+     * @param requestUri The URI of the request, useful as a cache key
+     * @param executor The executor retrieving the response from the Delivery API
+     * @return A future completed with the response, or completed exceptionally if the request failed
+     */
+    default CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+        CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        try {
+            future.complete(resolveRequest(requestUri, executor));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Resolves a request, returning the response in the form it is cached in.  The {@link DeliveryClient} calls this
+     * rather than {@link #resolveRequest(String, HttpRequestExecutor)}, so that a response held as bytes (see
+     * {@link CachedResponse#isCompact()}) is bound straight to the requested type without building a
+     * {@link JsonNode} tree first.
+     * <p>
+     * The default implementation wraps the result of {@link #resolveRequest(String, HttpRequestExecutor)}.
+     * @param requestUri The URI of the request, useful as a cache key
+     * @param executor The executor retrieving the response from the Delivery API
+     * @return The response
+     * @throws IOException Thrown if the request fails
+     */
+    default CachedResponse resolveResponse(String requestUri, HttpRequestExecutor executor) throws IOException {
+        return new CachedResponse(resolveRequest(requestUri, executor));
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #resolveResponse(String, HttpRequestExecutor)}.  The default implementation
+     * wraps the result of {@link #resolveRequestAsync(String, HttpRequestExecutor)}.
+     * @param requestUri The URI of the request, useful as a cache key
+     * @param executor The executor retrieving the response from the Delivery API
+     * @return A future completed with the response, or completed exceptionally if the request failed
+     */
+    default CompletableFuture<CachedResponse> resolveResponseAsync(String requestUri, HttpRequestExecutor executor) {
+        return resolveRequestAsync(requestUri, executor).thenApply(CachedResponse::new);
+    }
 }
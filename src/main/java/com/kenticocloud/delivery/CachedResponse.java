@@ -0,0 +1,344 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A response from the Delivery API together with the HTTP caching metadata returned with it.
+ * <p>
+ * {@link CacheManager} implementations use the validators ({@code ETag} and {@code Last-Modified}) to revalidate an
+ * expired response with a conditional request, and the {@code Cache-Control} directives to decide how long a response
+ * may be served without revalidation.
+ * <p>
+ * The body is held either as a parsed {@link JsonNode} tree, or as the raw UTF-8 JSON bytes, optionally compressed.
+ * Bytes take a fraction of the heap of a tree, which is parsed from them on demand; see {@link #compact(boolean)}.
+ * @see HttpRequestExecutor#executeConditionally(CachedResponse)
+ */
+public class CachedResponse {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final JsonNode body;
+    //Raw UTF-8 JSON when the body is not held as a tree
+    private final byte[] content;
+    private final boolean compressed;
+    private final String eTag;
+    private final String lastModified;
+    private final long maxAge;
+    private final boolean noStore;
+    private final boolean notModified;
+
+    /**
+     * Constructs a response without any caching metadata.
+     * @param body The parsed response body
+     */
+    public CachedResponse(JsonNode body) {
+        this(body, null, null, null);
+    }
+
+    /**
+     * Constructs a response from the caching headers returned with it.
+     * @param body The parsed response body
+     * @param eTag The value of the ETag header, or null
+     * @param lastModified The value of the Last-Modified header, or null
+     * @param cacheControl The value of the Cache-Control header, or null
+     */
+    public CachedResponse(JsonNode body, String eTag, String lastModified, String cacheControl) {
+        this(body, null, false, eTag, lastModified, parseMaxAge(cacheControl), hasDirective(cacheControl, "no-store"),
+                false);
+    }
+
+    /**
+     * Constructs a response holding the raw body, which is parsed only when needed.
+     * @param content The response body as UTF-8 encoded JSON
+     * @param eTag The value of the ETag header, or null
+     * @param lastModified The value of the Last-Modified header, or null
+     * @param cacheControl The value of the Cache-Control header, or null
+     */
+    public CachedResponse(byte[] content, String eTag, String lastModified, String cacheControl) {
+        this(null, content, false, eTag, lastModified, parseMaxAge(cacheControl),
+                hasDirective(cacheControl, "no-store"), false);
+    }
+
+    /**
+     * Creates a response holding only validators, for caches which keep the body elsewhere and revalidate without
+     * reading it.  Neither the response nor its revalidated copies have a body.
+     */
+    static CachedResponse validators(String eTag, String lastModified) {
+        return new CachedResponse(null, null, false, eTag, lastModified, -1, false, false);
+    }
+
+    private CachedResponse(JsonNode body, byte[] content, boolean compressed, String eTag, String lastModified,
+                           long maxAge, boolean noStore, boolean notModified) {
+        this.body = body;
+        this.content = content;
+        this.compressed = compressed;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.maxAge = maxAge;
+        this.noStore = noStore;
+        this.notModified = notModified;
+    }
+
+    /**
+     * The parsed response body.  When the body is held as bytes, it is parsed anew on every call, so callers should
+     * hold on to the result rather than call this repeatedly.
+     * @return the response body
+     * @throws UncheckedIOException Thrown if the body held as bytes is not valid JSON
+     */
+    public JsonNode getBody() {
+        if (body != null) {
+            return body;
+        }
+        checkBody();
+        try (InputStream inputStream = openContent()) {
+            return objectMapper.readTree(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The response body as UTF-8 encoded JSON, serialized from the tree if the body is not held as bytes.
+     * @return the raw response body
+     * @throws IOException Thrown if the body cannot be serialized or decompressed
+     */
+    public byte[] getContent() throws IOException {
+        checkBody();
+        if (content == null) {
+            return objectMapper.writeValueAsBytes(body);
+        }
+        if (!compressed) {
+            return content;
+        }
+        try (InputStream inputStream = openContent()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length * 4);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * Whether the body is held as bytes rather than as a parsed tree.
+     * @return true if {@link #getBody()} parses the body on every call
+     */
+    public boolean isCompact() {
+        return content != null;
+    }
+
+    /**
+     * The number of bytes the body is held in, compressed or not.
+     * @return the size of the raw body, or -1 if the body is held as a tree
+     */
+    public int getCompactSize() {
+        return content == null ? -1 : content.length;
+    }
+
+    /**
+     * Returns a copy of this response holding the body as bytes rather than as a tree, with the same metadata.
+     * @param compress Whether to compress the bytes, trading CPU time on every parse for a smaller footprint
+     * @return The compact response, or this response if it is already held in the requested form
+     * @throws IOException Thrown if the body cannot be serialized or compressed
+     */
+    public CachedResponse compact(boolean compress) throws IOException {
+        if (content != null && compressed == compress) {
+            return this;
+        }
+        byte[] raw = getContent();
+        return new CachedResponse(
+                null, compress ? deflate(raw) : raw, compress, eTag, lastModified, maxAge, noStore, notModified);
+    }
+
+    /**
+     * Returns a copy of this response holding the body as a parsed tree, with the same metadata.
+     * @return The parsed response, or this response if it already holds a tree
+     * @throws UncheckedIOException Thrown if the body held as bytes is not valid JSON
+     */
+    public CachedResponse parsed() {
+        if (body != null) {
+            return this;
+        }
+        return new CachedResponse(getBody(), null, false, eTag, lastModified, maxAge, noStore, notModified);
+    }
+
+    private void checkBody() {
+        if (body == null && content == null) {
+            throw new IllegalStateException("The response holds only validators.");
+        }
+    }
+
+    /**
+     * Identifies the body of the response, which copies made by {@link #revalidated(String, String, String)} share.
+     */
+    Object getSource() {
+        return content == null ? body : content;
+    }
+
+    /**
+     * Opens the body as a stream of UTF-8 JSON, so it can be bound to a type without building a tree.
+     */
+    InputStream openContent() throws IOException {
+        if (content == null) {
+            return new ByteArrayInputStream(getContent());
+        }
+        InputStream inputStream = new ByteArrayInputStream(content);
+        return compressed ? new InflaterInputStream(inputStream) : inputStream;
+    }
+
+    /**
+     * The entity tag of the response, sent back in an If-None-Match header on revalidation.
+     * @return the ETag header value, or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * The modification date of the response, sent back in an If-Modified-Since header on revalidation.
+     * @return the Last-Modified header value, or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * How long the response may be served without revalidation, as stated by the max-age directive.  A no-cache
+     * directive yields 0.
+     * @return the freshness lifetime in seconds, or -1 if the server did not state one
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Whether the server asked for the response not to be stored by the no-store directive.
+     * @return true if the response must not be cached
+     */
+    public boolean isNoStore() {
+        return noStore;
+    }
+
+    /**
+     * Whether this response is the result of a conditional request answered with 304 Not Modified, in which case the
+     * body is the one of the revalidated response.
+     * @return true if the previous response was revalidated
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Whether the response carries a validator which can be used for a conditional request.
+     * @return true if an ETag or Last-Modified value is present
+     */
+    public boolean hasValidators() {
+        return eTag != null || lastModified != null;
+    }
+
+    /**
+     * Returns a copy of this response refreshed by a 304 Not Modified response.  Headers present on the 304 response
+     * replace the stored ones, as per RFC 7232.
+     * @param eTag The value of the ETag header of the 304 response, or null
+     * @param lastModified The value of the Last-Modified header of the 304 response, or null
+     * @param cacheControl The value of the Cache-Control header of the 304 response, or null
+     * @return The revalidated response, sharing the body of this response
+     */
+    public CachedResponse revalidated(String eTag, String lastModified, String cacheControl) {
+        return new CachedResponse(
+                body,
+                content,
+                compressed,
+                eTag != null ? eTag : this.eTag,
+                lastModified != null ? lastModified : this.lastModified,
+                cacheControl != null ? parseMaxAge(cacheControl) : this.maxAge,
+                cacheControl != null ? hasDirective(cacheControl, "no-store") : this.noStore,
+                true);
+    }
+
+    static long parseMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        long maxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            String trimmed = directive.trim().toLowerCase(Locale.ROOT);
+            if ("no-cache".equals(trimmed)) {
+                return 0;
+            }
+            if (trimmed.startsWith("max-age=")) {
+                try {
+                    maxAge = Math.max(0, Long.parseLong(trimmed.substring("max-age=".length()).replace("\"", "")));
+                } catch (NumberFormatException e) {
+                    //Treat a malformed max-age as stale, as per RFC 7234
+                    maxAge = 0;
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    private static byte[] deflate(byte[] raw) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(raw.length / 4);
+            try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream, deflater)) {
+                deflaterStream.write(raw);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean hasDirective(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return false;
+        }
+        for (String candidate : cacheControl.split(",")) {
+            if (directive.equalsIgnoreCase(candidate.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
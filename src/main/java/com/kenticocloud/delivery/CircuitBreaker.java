@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks consecutive failures of requests to the Delivery API, and stops sending requests for a while once too many
+ * have failed in a row.
+ * <p>
+ * After the open duration has elapsed, a single probe request is let through.  If it succeeds the breaker closes again,
+ * otherwise it stays open for another open duration.  A probe which ends without telling either, for instance because it
+ * was shed locally, must be {@link #release(Permit) released} so that another probe is let through later.
+ */
+class CircuitBreaker {
+
+    /**
+     * The outcome of {@link #acquire(long)}.
+     */
+    enum Permit {
+        DENIED,
+        GRANTED,
+        PROBE
+    }
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    /**
+     * Determines whether a request may be sent.
+     * @param openDurationNanos How long the breaker stays open before letting a probe request through
+     * @return {@link Permit#DENIED} if the request may not be sent, {@link Permit#PROBE} if it is the single request
+     * let through while the breaker is open
+     */
+    Permit acquire(long openDurationNanos) {
+        int current = state.get();
+        if (current == CLOSED) {
+            return Permit.GRANTED;
+        }
+        if (current == OPEN &&
+                java.lang.System.nanoTime() - openedAt >= openDurationNanos &&
+                state.compareAndSet(OPEN, HALF_OPEN)) {
+            return Permit.PROBE;
+        }
+        return Permit.DENIED;
+    }
+
+    /**
+     * Gives back a permit whose request ended without a success or failure being recorded.  A probe puts the breaker
+     * back to open for another open duration, other permits have no effect.
+     * @param permit The permit obtained from {@link #acquire(long)}
+     */
+    void release(Permit permit) {
+        if (permit == Permit.PROBE && state.get() == HALF_OPEN) {
+            openedAt = java.lang.System.nanoTime();
+            state.compareAndSet(HALF_OPEN, OPEN);
+        }
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+        state.compareAndSet(HALF_OPEN, CLOSED);
+    }
+
+    /**
+     * Records a failed request, opening the breaker if the failure threshold is reached or the probe request failed.
+     * @param failureThreshold The number of consecutive failures opening the breaker, zero to never open it
+     */
+    void recordFailure(int failureThreshold) {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold || state.get() == HALF_OPEN) {
+            openedAt = java.lang.System.nanoTime();
+            state.set(OPEN);
+        }
+    }
+
+    boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+}
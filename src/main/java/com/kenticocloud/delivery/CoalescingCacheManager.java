@@ -0,0 +1,321 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A {@link CacheManager} decorator which coalesces concurrent requests for the same URI.
+ * <p>
+ * When several threads miss the cache for the same request URI at once, only the first one executes the HTTP request
+ * and stores the response in the wrapped cache.  The others wait for and share the response it resolved (or its
+ * failure), without storing it again.  This prevents a burst of identical requests against the Delivery API when a
+ * popular cached response expires, or right after a deploy.  Requests which hit the wrapped cache are not affected.
+ * Coalesced requests are reported to the {@link DeliveryMetricsListener} as cache misses, and counted by
+ * {@link #getCoalescedCount()}.
+ * <p>
+ * A request which joins another one is aborted by a runtime exception thrown from the {@link HttpRequestExecutor}
+ * handed to the wrapped cache, or by a future the executor completes exceptionally.  The wrapped cache must let it
+ * propagate, either unchanged or as the cause of another exception, and must not swallow it or serve a stale response
+ * in its place.
+ * <pre>
+ * client.setCacheManager(new CoalescingCacheManager(new InMemoryCacheManager()));
+ * </pre>
+ */
+public class CoalescingCacheManager implements CacheManager {
+
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    private final CacheManager delegate;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Constructs a decorator which coalesces requests without caching their responses.
+     */
+    public CoalescingCacheManager() {
+        this(DeliveryClient.PASS_THROUGH_CACHE_MANAGER);
+    }
+
+    /**
+     * Constructs a decorator which coalesces the requests missing the given cache.
+     * @param delegate The cache to coalesce misses of
+     */
+    public CoalescingCacheManager(CacheManager delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("The delegate cache manager is not specified.");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+        CoalescingRequestExecutor coalescingExecutor = new CoalescingRequestExecutor(requestUri, executor);
+        JsonNode response;
+        try {
+            response = delegate.resolveRequest(requestUri, coalescingExecutor);
+        } catch (IOException | RuntimeException e) {
+            Coalesced coalesced = findCoalesced(e);
+            if (coalesced != null) {
+                return follow(coalesced, executor).getBody();
+            }
+            coalescingExecutor.settle(null, e);
+            throw e;
+        }
+        coalescingExecutor.settle(new CachedResponse(response), null);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+        CoalescingRequestExecutor coalescingExecutor = new CoalescingRequestExecutor(requestUri, executor);
+        return settleAsync(coalescingExecutor, delegate.resolveRequestAsync(requestUri, coalescingExecutor),
+                CachedResponse::getBody, CachedResponse::new);
+    }
+
+    @Override
+    public CachedResponse resolveResponse(String requestUri, HttpRequestExecutor executor) throws IOException {
+        CoalescingRequestExecutor coalescingExecutor = new CoalescingRequestExecutor(requestUri, executor);
+        CachedResponse response;
+        try {
+            response = delegate.resolveResponse(requestUri, coalescingExecutor);
+        } catch (IOException | RuntimeException e) {
+            Coalesced coalesced = findCoalesced(e);
+            if (coalesced != null) {
+                return follow(coalesced, executor);
+            }
+            coalescingExecutor.settle(null, e);
+            throw e;
+        }
+        coalescingExecutor.settle(response, null);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<CachedResponse> resolveResponseAsync(String requestUri, HttpRequestExecutor executor) {
+        CoalescingRequestExecutor coalescingExecutor = new CoalescingRequestExecutor(requestUri, executor);
+        return settleAsync(coalescingExecutor, delegate.resolveResponseAsync(requestUri, coalescingExecutor),
+                Function.identity(), Function.identity());
+    }
+
+    /**
+     * Gets the number of distinct request URIs currently being retrieved.
+     * @return the number of requests in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Gets the number of requests which were served the response of another request for the same URI in flight.
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    private CachedResponse follow(Coalesced coalesced, HttpRequestExecutor executor) throws IOException {
+        coalescedCount.increment();
+        DeliveryClient.markInvoked(executor);
+        return await(coalesced.leader);
+    }
+
+    private <T> CompletableFuture<T> settleAsync(CoalescingRequestExecutor coalescingExecutor,
+                                                 CompletableFuture<T> resolution,
+                                                 Function<CachedResponse, T> fromShared,
+                                                 Function<T, CachedResponse> toShared) {
+        return resolution.handle((response, e) -> {
+            Coalesced coalesced = findCoalesced(e);
+            if (coalesced != null) {
+                coalescedCount.increment();
+                DeliveryClient.markInvoked(coalescingExecutor.executor);
+                //Hand out a dependent future, so one caller cancelling does not affect the others
+                return coalesced.leader.thenApply(fromShared);
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            coalescingExecutor.settle(cause == null ? toShared.apply(response) : null, cause);
+            return resolution;
+        }).thenCompose(Function.identity());
+    }
+
+    //The wrapped cache may have wrapped the exception thrown by the executor, so the whole cause chain is searched
+    private static Coalesced findCoalesced(Throwable e) {
+        //Bounded, as nothing stops a cause chain from looping
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (cause instanceof Coalesced) {
+                return (Coalesced) cause;
+            }
+            cause = cause.getCause();
+        }
+        return null;
+    }
+
+    private static CachedResponse await(CompletableFuture<CachedResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a coalesced request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Aborts the resolution of a request which joined another request in flight, so the wrapped cache does not store
+     * the shared response again.
+     */
+    private static final class Coalesced extends RuntimeException {
+
+        final CompletableFuture<CachedResponse> leader;
+
+        Coalesced(CompletableFuture<CachedResponse> leader) {
+            super("Coalesced with a request in flight", null, false, false);
+            this.leader = leader;
+        }
+    }
+
+    private class CoalescingRequestExecutor implements HttpRequestExecutor {
+
+        private final String requestUri;
+        private final HttpRequestExecutor executor;
+        //Guarded by this
+        private CompletableFuture<CachedResponse> leading;
+        private boolean settled;
+
+        CoalescingRequestExecutor(String requestUri, HttpRequestExecutor executor) {
+            this.requestUri = requestUri;
+            this.executor = executor;
+        }
+
+        @Override
+        public JsonNode execute() throws IOException {
+            join();
+            return executor.execute();
+        }
+
+        @Override
+        public CompletableFuture<JsonNode> executeAsync() {
+            CompletableFuture<JsonNode> coalesced = joinAsync();
+            return coalesced != null ? coalesced : executor.executeAsync();
+        }
+
+        @Override
+        public CachedResponse executeConditionally(CachedResponse previous) throws IOException {
+            join();
+            return executor.executeConditionally(previous);
+        }
+
+        @Override
+        public CompletableFuture<CachedResponse> executeConditionallyAsync(CachedResponse previous) {
+            CompletableFuture<CachedResponse> coalesced = joinAsync();
+            return coalesced != null ? coalesced : executor.executeConditionallyAsync(previous);
+        }
+
+        @Override
+        public CachedResponse executeConditionallyUnparsed(CachedResponse previous) throws IOException {
+            join();
+            return executor.executeConditionallyUnparsed(previous);
+        }
+
+        @Override
+        public CompletableFuture<CachedResponse> executeConditionallyUnparsedAsync(CachedResponse previous) {
+            CompletableFuture<CachedResponse> coalesced = joinAsync();
+            return coalesced != null ? coalesced : executor.executeConditionallyUnparsedAsync(previous);
+        }
+
+        @Override
+        public HttpRequestExecutor detached() {
+            //Background refreshes are never coalesced
+            return executor.detached();
+        }
+
+        /**
+         * Leads the request, or throws {@link Coalesced} if another request for the URI is in flight.  Requests made
+         * by the wrapped cache after the resolution returned, such as background refreshes, are never coalesced.
+         */
+        private void join() {
+            CompletableFuture<CachedResponse> existing;
+            synchronized (this) {
+                if (leading != null || settled) {
+                    return;
+                }
+                CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+                existing = inFlight.putIfAbsent(requestUri, future);
+                if (existing == null) {
+                    leading = future;
+                    return;
+                }
+            }
+            throw new Coalesced(existing);
+        }
+
+        private <T> CompletableFuture<T> joinAsync() {
+            try {
+                join();
+                return null;
+            } catch (Coalesced e) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+
+        //Shares the outcome of the resolution with the requests which joined it
+        void settle(CachedResponse response, Throwable failure) {
+            CompletableFuture<CachedResponse> future;
+            synchronized (this) {
+                settled = true;
+                future = leading;
+            }
+            if (future == null) {
+                return;
+            }
+            inFlight.remove(requestUri, future);
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(response);
+            }
+        }
+    }
+}
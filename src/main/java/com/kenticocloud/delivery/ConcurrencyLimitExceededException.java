@@ -0,0 +1,45 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request is not sent because the adaptive concurrency limit was reached, and no permit became
+ * available within the maximum wait.
+ * @see DeliveryOptions#setConcurrencyLimitEnabled(boolean)
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+
+    /**
+     * Constructs the exception for a request which was not sent.
+     * @param requestUri The URI of the request
+     * @param limit The concurrency limit at the time of the rejection
+     */
+    public ConcurrencyLimitExceededException(String requestUri, int limit) {
+        super(String.format("The concurrency limit of %d requests was reached, not sending request to %s",
+                limit, requestUri));
+    }
+}
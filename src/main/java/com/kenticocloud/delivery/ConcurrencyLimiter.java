@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight to the Delivery API, adapting the limit to the observed latency with
+ * additive increase, multiplicative decrease (AIMD).
+ * <p>
+ * Every request which completes in time while the limit is in use raises the limit by {@code 1 / limit}, so the limit
+ * grows by about one per round of requests.  Every request which fails, is throttled, or takes longer than the latency
+ * threshold cuts the limit by {@link #BACKOFF_RATIO}.  Requests over the limit wait for a permit for a bounded time,
+ * and are then rejected with a {@link ConcurrencyLimitExceededException}.
+ */
+class ConcurrencyLimiter {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final DeliveryOptions deliveryOptions;
+    private double limit;
+    private int inFlight;
+
+    ConcurrencyLimiter(DeliveryOptions deliveryOptions) {
+        this.deliveryOptions = deliveryOptions;
+        this.limit = deliveryOptions.getInitialConcurrencyLimit();
+    }
+
+    /**
+     * Waits for a permit to send a request.
+     * @param requestUri The URI of the request, for the rejection message
+     * @throws ConcurrencyLimitExceededException Thrown if no permit became available within the maximum wait
+     * @throws InterruptedIOException Thrown if the thread was interrupted while waiting
+     */
+    void acquire(String requestUri) throws ConcurrencyLimitExceededException, InterruptedIOException {
+        CompletableFuture<Void> permit = enqueue();
+        if (permit == ACQUIRED) {
+            return;
+        }
+        try {
+            permit.get(deliveryOptions.getConcurrencyLimitMaxWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!permit.cancel(false)) {
+                //Granted after all, while timing out
+                return;
+            }
+            remove(permit);
+            throw new ConcurrencyLimitExceededException(requestUri, getLimit());
+        } catch (InterruptedException e) {
+            if (permit.cancel(false)) {
+                remove(permit);
+            } else {
+                returnPermit();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a concurrency limit permit");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Obtains a permit to send a request without blocking.
+     * @param requestUri The URI of the request, for the rejection message
+     * @param scheduler The scheduler to time out the wait with
+     * @return A future completing once a permit is granted, or exceptionally with a
+     * {@link ConcurrencyLimitExceededException} after the maximum wait
+     */
+    CompletableFuture<Void> acquireAsync(String requestUri, ScheduledExecutorService scheduler) {
+        CompletableFuture<Void> permit = enqueue();
+        if (permit.isDone()) {
+            return permit;
+        }
+        try {
+            scheduler.schedule(
+                    () -> reject(permit, requestUri),
+                    deliveryOptions.getConcurrencyLimitMaxWaitMillis(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            reject(permit, requestUri);
+        }
+        return permit;
+    }
+
+    /**
+     * Obtains a permit only if one is free right away and nobody is waiting, for requests only worth sending with spare
+     * capacity.
+     * @return Whether a permit was obtained
+     */
+    boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit, and adjusts the limit to the outcome of the request.
+     * @param latencyNanos How long the request took
+     * @param dropped Whether the request failed or was throttled
+     */
+    void release(long latencyNanos, boolean dropped) {
+        List<CompletableFuture<Void>> granted;
+        lock.lock();
+        try {
+            boolean overloaded = dropped ||
+                    latencyNanos > TimeUnit.MILLISECONDS.toNanos(deliveryOptions.getConcurrencyLimitLatencyMillis());
+            if (overloaded) {
+                limit = Math.max(deliveryOptions.getMinConcurrencyLimit(), limit * BACKOFF_RATIO);
+            } else if (inFlight >= (int) limit / 2) {
+                //Only grow while the limit is actually being used
+                limit = Math.min(deliveryOptions.getMaxConcurrencyLimit(), limit + 1 / limit);
+            }
+            inFlight--;
+            granted = pollGranted();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Returns a permit which was not used, without adjusting the limit
+    private void returnPermit() {
+        List<CompletableFuture<Void>> granted;
+        lock.lock();
+        try {
+            inFlight--;
+            granted = pollGranted();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+    }
+
+    //Guarded by the lock
+    private List<CompletableFuture<Void>> pollGranted() {
+        List<CompletableFuture<Void>> granted = Collections.emptyList();
+        while (inFlight < (int) limit) {
+            CompletableFuture<Void> waiter = waiters.poll();
+            if (waiter == null) {
+                break;
+            }
+            if (waiter.isDone()) {
+                //Timed out or cancelled
+                continue;
+            }
+            if (granted.isEmpty()) {
+                granted = new ArrayList<>();
+            }
+            granted.add(waiter);
+            inFlight++;
+        }
+        return granted;
+    }
+
+    //Completes the permits outside the lock, as completing them runs the stages of waiting asynchronous requests
+    private void grant(List<CompletableFuture<Void>> granted) {
+        for (CompletableFuture<Void> permit : granted) {
+            if (!permit.complete(null)) {
+                //Timed out or cancelled since it was polled, pass the permit on
+                returnPermit();
+            }
+        }
+    }
+
+    private void reject(CompletableFuture<Void> permit, String requestUri) {
+        if (permit.completeExceptionally(new ConcurrencyLimitExceededException(requestUri, getLimit()))) {
+            remove(permit);
+        }
+    }
+
+    private void remove(CompletableFuture<Void> permit) {
+        lock.lock();
+        try {
+            waiters.remove(permit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return ACQUIRED;
+            }
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            waiters.add(permit);
+            return permit;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -166,6 +167,33 @@ public class ContentItem {
                 this, modularContentProvider.getModularContent(), contentType);
     }
 
+    /**
+     * Returns a copy of this item with some of its elements replaced, leaving this item and its other elements
+     * untouched.  The replacements are parented to the copy.
+     */
+    ContentItem withElements(Map<String, Element> replacements) {
+        ContentItem copy = new ContentItem();
+        copy.system = system;
+        copy.modularContentProvider = modularContentProvider;
+        copy.stronglyTypedContentItemConverter = stronglyTypedContentItemConverter;
+        Map<String, Element> copiedElements = new LinkedHashMap<>(elements);
+        replacements.forEach((codename, element) -> {
+            element.parent = copy;
+            copiedElements.put(codename, element);
+        });
+        copy.elements = Collections.unmodifiableMap(copiedElements);
+        return copy;
+    }
+
+    /**
+     * Wraps the elements in a read-only view, once they are resolved.
+     */
+    void makeReadOnly() {
+        if (elements != null) {
+            elements = Collections.unmodifiableMap(elements);
+        }
+    }
+
     void setModularContentProvider(ModularContentProvider modularContentProvider) {
         this.modularContentProvider = modularContentProvider;
     }
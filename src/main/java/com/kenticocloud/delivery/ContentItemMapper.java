@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+/**
+ * Creates and fills instances of a class annotated with {@link ContentItemMapping} without reflection.
+ * <p>
+ * Implementations are generated at compile time by {@link ContentItemMappingProcessor}, and listed in
+ * {@code META-INF/services/com.kenticocloud.delivery.ContentItemMapper} so that they are found with
+ * {@link java.util.ServiceLoader}.  The {@link DeliveryClient} uses the mapper of a class, when there is one, in
+ * place of reflective construction and property setting; which elements and content items are mapped onto which
+ * fields does not change.
+ * @param <T> The mapped class
+ * @see DeliveryClient#registerGeneratedMappers()
+ */
+public interface ContentItemMapper<T> {
+
+    /**
+     * The class this mapper creates instances of.
+     * @return the mapped class
+     */
+    Class<T> getMappedClass();
+
+    /**
+     * The codename of the content type the class is mapped to, as given by its {@link ContentItemMapping}.
+     * @return the content type codename
+     */
+    String getContentType();
+
+    /**
+     * Creates an instance of the mapped class with its default constructor.
+     * @return the new instance
+     */
+    T newInstance();
+
+    /**
+     * Sets a field of an instance through its setter.
+     * @param bean The instance to set the field of
+     * @param fieldName The name of the field
+     * @param value The value to set
+     * @return false if the field has no setter, or its setter does not accept the value as it is, in which case the
+     * value is set reflectively
+     */
+    boolean setValue(T bean, String fieldName, Object value);
+}
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@link ContentItemMapper} for every class annotated with {@link ContentItemMapping}, and lists them in
+ * {@code META-INF/services/com.kenticocloud.delivery.ContentItemMapper}.
+ * <p>
+ * The processor is not registered as a service, so that it only runs when asked to, for example with
+ * {@code javac -processor com.kenticocloud.delivery.ContentItemMappingProcessor}.  Classes which cannot be
+ * instantiated from their package, such as abstract, private or generic classes, or classes without a default
+ * constructor, are skipped with a warning and keep being mapped reflectively.
+ */
+public class ContentItemMappingProcessor extends AbstractProcessor {
+
+    static final String SERVICE_FILE = "META-INF/services/" + ContentItemMapper.class.getName();
+
+    static final String MAPPER_SUFFIX = "_ContentItemMapper";
+
+    private final Set<String> mappers = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ContentItemMapping.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!mappers.isEmpty()) {
+                writeServiceFile();
+            }
+            return false;
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(ContentItemMapping.class))) {
+            if (type.getKind() != ElementKind.CLASS || !isInstantiable(type)) {
+                continue;
+            }
+            try {
+                mappers.add(writeMapper(type));
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.ERROR, "Failed to generate a ContentItemMapper: " + e.getMessage(), type);
+            }
+        }
+        //Field level mappings are left to other processors, if any
+        return false;
+    }
+
+    private boolean isInstantiable(TypeElement type) {
+        String reason = null;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            reason = "it is abstract";
+        } else if (!type.getTypeParameters().isEmpty()) {
+            reason = "it is generic";
+        } else if (!hasDefaultConstructor(type)) {
+            reason = "it has no non-private default constructor";
+        }
+        for (Element element = type; reason == null && element.getKind() != ElementKind.PACKAGE;
+             element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                reason = "it is private";
+            } else if (element instanceof TypeElement &&
+                    ((TypeElement) element).getNestingKind() == NestingKind.MEMBER &&
+                    !element.getModifiers().contains(Modifier.STATIC)) {
+                reason = "it is an inner class";
+            } else if (element instanceof TypeElement &&
+                    ((TypeElement) element).getNestingKind().isNested() &&
+                    ((TypeElement) element).getNestingKind() != NestingKind.MEMBER) {
+                reason = "it is a local class";
+            }
+        }
+        if (reason != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "No ContentItemMapper generated for " + type.getQualifiedName() + " as " + reason, type);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasDefaultConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String writeMapper(TypeElement type) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String mapperName = getMapperName(type);
+        String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        String typeName = type.getQualifiedName().toString();
+        String contentType = type.getAnnotation(ContentItemMapping.class).value();
+
+        Filer filer = processingEnv.getFiler();
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(qualifiedMapperName, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Maps content items onto {@link " + typeName + "}.  Generated by "
+                    + ContentItemMappingProcessor.class.getSimpleName() + ", do not edit.");
+            out.println(" */");
+            out.println("public final class " + mapperName
+                    + " implements " + ContentItemMapper.class.getName() + "<" + typeName + "> {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.lang.Class<" + typeName + "> getMappedClass() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.lang.String getContentType() {");
+            out.println("        return " + processingEnv.getElementUtils().getConstantExpression(contentType) + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " newInstance() {");
+            out.println("        return new " + typeName + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    @SuppressWarnings(\"unchecked\")");
+            out.println("    public boolean setValue("
+                    + typeName + " bean, java.lang.String fieldName, java.lang.Object value) {");
+            out.println("        switch (fieldName) {");
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                ExecutableElement setter = findSetter(type, field);
+                if (setter == null) {
+                    continue;
+                }
+                TypeMirror parameterType = setter.getParameters().get(0).asType();
+                String checkedType = getCheckedType(parameterType);
+                out.println("            case " + processingEnv.getElementUtils().getConstantExpression(
+                        field.getSimpleName().toString()) + ":");
+                out.println("                if (value instanceof " + checkedType + ") {");
+                out.println("                    bean." + setter.getSimpleName() + "(("
+                        + (parameterType.getKind().isPrimitive() ? checkedType : parameterType.toString())
+                        + ") value);");
+                out.println("                    return true;");
+                out.println("                }");
+                out.println("                return false;");
+            }
+            out.println("            default:");
+            out.println("                return false;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+        return qualifiedMapperName;
+    }
+
+    static String getMapperName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element element = type.getEnclosingElement(); element instanceof TypeElement;
+             element = element.getEnclosingElement()) {
+            name.insert(0, element.getSimpleName() + "_");
+        }
+        return name.append(MAPPER_SUFFIX).toString();
+    }
+
+    //Looks up the setter the same way java.beans.Introspector names it, through the class and its superclasses
+    private ExecutableElement findSetter(TypeElement type, VariableElement field) {
+        String fieldName = field.getSimpleName().toString();
+        if (field.getModifiers().contains(Modifier.STATIC) || fieldName.isEmpty()) {
+            return null;
+        }
+        String setterName = "set" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        for (ExecutableElement method :
+                ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getSimpleName().contentEquals(setterName) ||
+                    method.getParameters().size() != 1 ||
+                    method.getModifiers().contains(Modifier.STATIC) ||
+                    method.getParameters().get(0).asType().getKind() == TypeKind.TYPEVAR) {
+                continue;
+            }
+            boolean accessible = method.getModifiers().contains(Modifier.PUBLIC) ||
+                    (!method.getModifiers().contains(Modifier.PRIVATE) &&
+                            processingEnv.getElementUtils().getPackageOf(method).equals(packageElement));
+            if (accessible) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private String getCheckedType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type)
+                    .getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void writeServiceFile() {
+        Filer filer = processingEnv.getFiler();
+        Set<String> entries = new TreeSet<>(mappers);
+        try {
+            //Keep the mappers of classes which were not recompiled this time
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        entries.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //There is no previous service file
+        }
+        try {
+            FileObject serviceFile = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = new OutputStreamWriter(serviceFile.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "Failed to write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -27,6 +27,7 @@ package com.kenticocloud.delivery;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -91,6 +92,18 @@ public class ContentItemResponse implements ModularContentProvider {
         return stronglyTypedContentItemConverter.convert(item, getModularContent(), tClass);
     }
 
+    /**
+     * Wraps the item, the modular content and their elements in read-only views, once rich text is resolved, so the
+     * response can be shared between threads.
+     */
+    void makeReadOnly() {
+        item.makeReadOnly();
+        if (modularContent != null) {
+            modularContent.values().forEach(ContentItem::makeReadOnly);
+            modularContent = Collections.unmodifiableMap(modularContent);
+        }
+    }
+
     void setStronglyTypedContentItemConverter(StronglyTypedContentItemConverter stronglyTypedContentItemConverter) {
         this.stronglyTypedContentItemConverter = stronglyTypedContentItemConverter;
         item.setStronglyTypedContentItemConverter(stronglyTypedContentItemConverter);
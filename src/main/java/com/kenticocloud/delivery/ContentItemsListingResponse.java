@@ -27,7 +27,7 @@ package com.kenticocloud.delivery;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -99,17 +99,27 @@ public class ContentItemsListingResponse implements ModularContentProvider {
     /**
      * Returns a new instance of List&lt;T&gt; by mapping fields to elements in this content item.  Element fields are
      * mapped by automatically CamelCasing and checking for equality, unless otherwise annotated by an
-     * {@link ElementMapping} annotation.  T must have a default constructor and have standard setter methods.
+     * {@link ElementMapping} annotation.  T must have a default constructor and have standard setter methods.  Large
+     * listings are converted in parallel when {@link DeliveryClient#setConversionExecutor} is set.
      * @param tClass The class which a new instance should be returned from
      * @param <T> The type of class
      * @return An instance of List&lt;T&gt; with data mapped from the {@link ContentItem} list in this response.
      */
     public <T> List<T> castTo(Class<T> tClass) {
-        ArrayList<T> tItems = new ArrayList<>();
-        for (ContentItem item : getItems()) {
-            tItems.add(stronglyTypedContentItemConverter.convert(item, getModularContent(),tClass));
+        return stronglyTypedContentItemConverter.convert(getItems(), getModularContent(), tClass);
+    }
+
+    /**
+     * Wraps the items, the modular content and their elements in read-only views, once rich text is resolved, so the
+     * response can be shared between threads.
+     */
+    void makeReadOnly() {
+        items.forEach(ContentItem::makeReadOnly);
+        items = Collections.unmodifiableList(items);
+        if (modularContent != null) {
+            modularContent.values().forEach(ContentItem::makeReadOnly);
+            modularContent = Collections.unmodifiableMap(modularContent);
         }
-        return tItems;
     }
 
     void setStronglyTypedContentItemConverter(StronglyTypedContentItemConverter stronglyTypedContentItemConverter) {
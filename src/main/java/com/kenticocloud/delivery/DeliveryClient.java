@@ -26,31 +26,75 @@ package com.kenticocloud.delivery;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
 import com.kenticocloud.delivery.template.TemplateEngineConfig;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.DecompressingEntity;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Executes requests against the Kentico Cloud Delivery API.
+ * <p>
+ * Every retrieval method has an asynchronous counterpart suffixed with {@code Async}, which returns a
+ * {@link CompletableFuture} and performs the HTTP exchange on a non-blocking I/O engine instead of the calling thread.
+ * Responses are parsed and converted, and the returned futures completed, on the callback executor rather than on the
+ * I/O threads, see {@link #setCallbackExecutor(Executor)}.
+ * <p>
+ * Requests are sent through an {@link HttpTransport}, by default an {@link ApacheHttpTransport}.  See
+ * {@link #setHttpTransport(HttpTransport)} to plug in another HTTP engine.
+ * <p>
+ * Failed requests can be retried, and a circuit breaker can stop sending requests while the Delivery API is
+ * unhealthy, see {@link DeliveryOptions#setMaxRetryAttempts(int)} and
+ * {@link DeliveryOptions#setCircuitBreakerFailureThreshold(int)}.
  */
-public class DeliveryClient {
+public class DeliveryClient implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(DeliveryClient.class);
 
@@ -61,10 +105,35 @@ public class DeliveryClient {
 
     private static final String URL_CONCAT = "%s/%s";
 
+    //Not defined by HttpCore 4.4
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final int DECOMPRESSION_BUFFER_SIZE = 8192;
+
+    //Used when no CacheManager is set, lets responses be bound straight from the response stream
+    static final CacheManager PASS_THROUGH_CACHE_MANAGER = new CacheManager() {
+        @Override
+        public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+            return executor.execute();
+        }
+
+        @Override
+        public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+            return executor.executeAsync();
+        }
+    };
+
     private ObjectMapper objectMapper = new ObjectMapper();
-    private PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
-    private HttpClient httpClient;
+    private ConcurrentHashMap<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
+    private HttpTransport httpTransport;
+    private boolean ownsHttpTransport = true;
+    private volatile ScheduledExecutorService scheduler;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final RequestHedger requestHedger = new RequestHedger();
+    private ConcurrencyLimiter concurrencyLimiter;
     private DeliveryOptions deliveryOptions;
+    //Overrides the pool sizes of the options once set, without writing into them
+    private int maxConnections = -1;
 
     private ContentLinkUrlResolver contentLinkUrlResolver;
     private BrokenLinkUrlResolver brokenLinkUrlResolver;
@@ -73,7 +142,17 @@ public class DeliveryClient {
             new StronglyTypedContentItemConverter();
     private TemplateEngineConfig templateEngineConfig;
 
-    private CacheManager cacheManager = (requestUri, executor) -> executor.execute();
+    private CacheManager cacheManager = PASS_THROUGH_CACHE_MANAGER;
+    private volatile ResultCache resultCache;
+    private volatile Executor callbackExecutor = ForkJoinPool.commonPool();
+    //Bumped whenever the cached results go stale because resolvers or type mappings changed
+    private final AtomicLong resultCacheVersion = new AtomicLong();
+
+    //Compared by identity, so requests are not timed at all unless a listener is set
+    static final DeliveryMetricsListener NO_OP_METRICS_LISTENER = new DeliveryMetricsListener() {
+    };
+
+    private DeliveryMetricsListener metricsListener = NO_OP_METRICS_LISTENER;
 
     /**
      * Initializes a new instance of the {@link DeliveryClient} class for retrieving content of the specified project.
@@ -116,9 +195,8 @@ public class DeliveryClient {
             throw new IllegalArgumentException("Cannot provide both a preview API key and a production API key.");
         }
         this.deliveryOptions = deliveryOptions;
-        connManager.setMaxTotal(20);
-        connManager.setDefaultMaxPerRoute(20);
-        httpClient = HttpClients.custom().setConnectionManager(connManager).build();
+        httpTransport = new ApacheHttpTransport(deliveryOptions);
+        concurrencyLimiter = new ConcurrencyLimiter(deliveryOptions);
         if (templateEngineConfig != null) {
             templateEngineConfig.init();
             this.templateEngineConfig = templateEngineConfig;
@@ -158,23 +236,14 @@ public class DeliveryClient {
 
     public ContentItemsListingResponse getItems(List<NameValuePair> params) throws IOException {
         HttpUriRequest request = buildGetRequest(ITEMS, params);
-        ContentItemsListingResponse contentItemsListingResponse =
-                executeRequest(request, ContentItemsListingResponse.class);
-        contentItemsListingResponse.setStronglyTypedContentItemConverter(stronglyTypedContentItemConverter);
-        RichTextElementConverter converter = new RichTextElementConverter(
-                getContentLinkUrlResolver(),
-                getBrokenLinkUrlResolver(),
-                getRichTextElementResolver(),
-                templateEngineConfig,
-                stronglyTypedContentItemConverter
-        );
-        converter.process(contentItemsListingResponse.getItems());
-        return contentItemsListingResponse;
+        return executeRequest(
+                request, ContentItemsListingResponse.class, ContentItemsListingResponse.class, this::postProcess);
     }
 
     public <T> List<T> getItems(Class<T> tClass, List<NameValuePair> params) throws IOException {
-        ContentItemsListingResponse contentItemsListingResponse = getItems(params);
-        return contentItemsListingResponse.castTo(tClass);
+        HttpUriRequest request = buildGetRequest(ITEMS, params);
+        return executeRequest(request, ContentItemsListingResponse.class, tClass,
+                response -> castTo(postProcess(response), tClass));
     }
 
     public ContentItemResponse getItem(String contentItemCodename) throws IOException {
@@ -195,18 +264,9 @@ public class DeliveryClient {
         if (pagination.getNextPage() == null || pagination.getNextPage().isEmpty()) {
             return null;
         }
-        RequestBuilder requestBuilder = RequestBuilder.get(pagination.getNextPage());
-        requestBuilder = addHeaders(requestBuilder);
-        HttpUriRequest httpUriRequest = requestBuilder.build();
-        ContentItemsListingResponse response = executeRequest(httpUriRequest, ContentItemsListingResponse.class);
-        RichTextElementConverter converter = new RichTextElementConverter(
-                getContentLinkUrlResolver(),
-                getBrokenLinkUrlResolver(),
-                getRichTextElementResolver(),
-                templateEngineConfig,
-                stronglyTypedContentItemConverter
-        );
-        converter.process(response.getItems());
+        HttpUriRequest httpUriRequest = buildNextPageRequest(pagination);
+        ContentItemsListingResponse response = executeRequest(httpUriRequest,
+                ContentItemsListingResponse.class, ContentItemsListingResponse.class, this::postProcess);
         return new Page<>(response, currentPage.getType(), this);
     }
 
@@ -216,22 +276,13 @@ public class DeliveryClient {
 
     public ContentItemResponse getItem(String contentItemCodename, List<NameValuePair> params) throws IOException {
         HttpUriRequest request = buildGetRequest(String.format(URL_CONCAT, ITEMS, contentItemCodename), params);
-        ContentItemResponse contentItemResponse = executeRequest(request, ContentItemResponse.class);
-        contentItemResponse.setStronglyTypedContentItemConverter(stronglyTypedContentItemConverter);
-        RichTextElementConverter converter = new RichTextElementConverter(
-                getContentLinkUrlResolver(),
-                getBrokenLinkUrlResolver(),
-                getRichTextElementResolver(),
-                templateEngineConfig,
-                stronglyTypedContentItemConverter
-        );
-        converter.process(contentItemResponse.getItem());
-        return contentItemResponse;
+        return executeRequest(request, ContentItemResponse.class, ContentItemResponse.class, this::postProcess);
     }
 
     public <T> T getItem(String contentItemCodename, Class<T> tClass, List<NameValuePair> params) throws IOException {
-        ContentItemResponse contentItemResponse = getItem(contentItemCodename, params);
-        return contentItemResponse.castTo(tClass);
+        HttpUriRequest request = buildGetRequest(String.format(URL_CONCAT, ITEMS, contentItemCodename), params);
+        return executeRequest(request, ContentItemResponse.class, tClass,
+                response -> castTo(postProcess(response), tClass));
     }
 
     public ContentTypesListingResponse getTypes() throws IOException {
@@ -282,12 +333,118 @@ public class DeliveryClient {
         return executeRequest(request, TaxonomyGroup.class);
     }
 
+    public CompletableFuture<ContentItemsListingResponse> getItemsAsync() {
+        return getItemsAsync(new ArrayList<>());
+    }
+
+    public CompletableFuture<ContentItemsListingResponse> getItemsAsync(List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(ITEMS, params);
+        return executeRequestAsync(
+                request, ContentItemsListingResponse.class, ContentItemsListingResponse.class, this::postProcess);
+    }
+
+    public <T> CompletableFuture<List<T>> getItemsAsync(Class<T> tClass) {
+        return getItemsAsync(tClass, new ArrayList<>());
+    }
+
+    public <T> CompletableFuture<List<T>> getItemsAsync(Class<T> tClass, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(ITEMS, params);
+        return executeRequestAsync(request, ContentItemsListingResponse.class, tClass,
+                response -> castTo(postProcess(response), tClass));
+    }
+
+    public <T> CompletableFuture<Page<T>> getPageOfItemsAsync(Class<T> tClass, List<NameValuePair> params) {
+        return getItemsAsync(params).thenApply(response -> new Page<>(response, tClass, this));
+    }
+
+    public <T> CompletableFuture<Page<T>> getNextPageAsync(Page<T> currentPage) {
+        Pagination pagination = currentPage.getPagination();
+        if (pagination.getNextPage() == null || pagination.getNextPage().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpUriRequest httpUriRequest = buildNextPageRequest(pagination);
+        return executeRequestAsync(httpUriRequest,
+                ContentItemsListingResponse.class, ContentItemsListingResponse.class, this::postProcess)
+                .thenApply(response -> new Page<>(response, currentPage.getType(), this));
+    }
+
+    public CompletableFuture<ContentItemResponse> getItemAsync(String contentItemCodename) {
+        return getItemAsync(contentItemCodename, new ArrayList<>());
+    }
+
+    public CompletableFuture<ContentItemResponse> getItemAsync(
+            String contentItemCodename, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(String.format(URL_CONCAT, ITEMS, contentItemCodename), params);
+        return executeRequestAsync(request, ContentItemResponse.class, ContentItemResponse.class, this::postProcess);
+    }
+
+    public <T> CompletableFuture<T> getItemAsync(String contentItemCodename, Class<T> tClass) {
+        return getItemAsync(contentItemCodename, tClass, new ArrayList<>());
+    }
+
+    public <T> CompletableFuture<T> getItemAsync(
+            String contentItemCodename, Class<T> tClass, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(String.format(URL_CONCAT, ITEMS, contentItemCodename), params);
+        return executeRequestAsync(request, ContentItemResponse.class, tClass,
+                response -> castTo(postProcess(response), tClass));
+    }
+
+    public CompletableFuture<ContentTypesListingResponse> getTypesAsync() {
+        return getTypesAsync(new ArrayList<>());
+    }
+
+    public CompletableFuture<ContentTypesListingResponse> getTypesAsync(List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(TYPES, params);
+        return executeRequestAsync(request, ContentTypesListingResponse.class);
+    }
+
+    public CompletableFuture<ContentType> getTypeAsync(String contentTypeCodeName) {
+        return getTypeAsync(contentTypeCodeName, new ArrayList<>());
+    }
+
+    public CompletableFuture<ContentType> getTypeAsync(String contentTypeCodeName, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(String.format(URL_CONCAT, TYPES, contentTypeCodeName), params);
+        return executeRequestAsync(request, ContentType.class);
+    }
+
+    public CompletableFuture<Element> getContentTypeElementAsync(String contentTypeCodeName, String elementCodeName) {
+        return getContentTypeElementAsync(contentTypeCodeName, elementCodeName, new ArrayList<>());
+    }
+
+    public CompletableFuture<Element> getContentTypeElementAsync(
+            String contentTypeCodeName, String elementCodeName, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(
+                String.format("%s/%s/%s/%s", TYPES, contentTypeCodeName, ELEMENTS, elementCodeName), params);
+        return executeRequestAsync(request, Element.class);
+    }
+
+    public CompletableFuture<TaxonomyGroupListingResponse> getTaxonomyGroupsAsync() {
+        return getTaxonomyGroupsAsync(new ArrayList<>());
+    }
+
+    public CompletableFuture<TaxonomyGroupListingResponse> getTaxonomyGroupsAsync(List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(TAXONOMIES, params);
+        return executeRequestAsync(request, TaxonomyGroupListingResponse.class);
+    }
+
+    public CompletableFuture<TaxonomyGroup> getTaxonomyGroupAsync(String taxonomyGroupCodename) {
+        return getTaxonomyGroupAsync(taxonomyGroupCodename, new ArrayList<>());
+    }
+
+    public CompletableFuture<TaxonomyGroup> getTaxonomyGroupAsync(
+            String taxonomyGroupCodename, List<NameValuePair> params) {
+        HttpUriRequest request = buildGetRequest(
+                String.format("%s/%s", TAXONOMIES, taxonomyGroupCodename), params);
+        return executeRequestAsync(request, TaxonomyGroup.class);
+    }
+
     public ContentLinkUrlResolver getContentLinkUrlResolver() {
         return contentLinkUrlResolver;
     }
 
     public void setContentLinkUrlResolver(ContentLinkUrlResolver contentLinkUrlResolver) {
         this.contentLinkUrlResolver = contentLinkUrlResolver;
+        invalidateResults();
     }
 
     public BrokenLinkUrlResolver getBrokenLinkUrlResolver() {
@@ -296,6 +453,7 @@ public class DeliveryClient {
 
     public void setBrokenLinkUrlResolver(BrokenLinkUrlResolver brokenLinkUrlResolver) {
         this.brokenLinkUrlResolver = brokenLinkUrlResolver;
+        invalidateResults();
     }
 
     public RichTextElementResolver getRichTextElementResolver() {
@@ -304,6 +462,7 @@ public class DeliveryClient {
 
     public void setRichTextElementResolver(RichTextElementResolver richTextElementResolver) {
         this.richTextElementResolver = richTextElementResolver;
+        invalidateResults();
     }
 
     public void addRichTextElementResolver(RichTextElementResolver richTextElementResolver) {
@@ -317,30 +476,229 @@ public class DeliveryClient {
             delegatingResolver.addResolver(richTextElementResolver);
             setRichTextElementResolver(delegatingResolver);
         }
+        invalidateResults();
     }
 
     public void registerType(String contentType, Class<?> clazz) {
         stronglyTypedContentItemConverter.registerType(contentType, clazz);
+        invalidateResults();
     }
 
     public void registerType(Class<?> clazz) {
         stronglyTypedContentItemConverter.registerType(clazz);
+        invalidateResults();
     }
 
     public void registerInlineContentItemsResolver(InlineContentItemsResolver resolver) {
         stronglyTypedContentItemConverter.registerInlineContentItemsResolver(resolver);
+        invalidateResults();
     }
 
     public void scanClasspathForMappings(String basePackage) {
         stronglyTypedContentItemConverter.scanClasspathForMappings(basePackage);
+        invalidateResults();
+    }
+
+    /**
+     * Registers the classes which {@link ContentItemMappingProcessor} generated a {@link ContentItemMapper} for, as
+     * listed in {@code META-INF/services/com.kenticocloud.delivery.ContentItemMapper}.  Unlike
+     * {@link #scanClasspathForMappings(String)}, this reads a single index rather than scanning the classpath.
+     * <p>
+     * Generated mappers are used to convert items whether or not their classes were registered this way.
+     */
+    public void registerGeneratedMappers() {
+        stronglyTypedContentItemConverter.registerGeneratedMappers();
+        invalidateResults();
+    }
+
+    /**
+     * Sets the executor large listings are converted to strongly typed models on, in parallel chunks.  The items keep
+     * their order, and the calling thread converts the first chunk itself.  Listings with fewer than 64 items are
+     * always converted on the calling thread.
+     * @param conversionExecutor The executor to convert on, such as {@code ForkJoinPool.commonPool()}, or null to
+     *                           convert every listing on the calling thread
+     * @see ContentItemsListingResponse#castTo(Class)
+     */
+    public void setConversionExecutor(Executor conversionExecutor) {
+        stronglyTypedContentItemConverter.setConversionExecutor(conversionExecutor);
+    }
+
+    /**
+     * Sets whether modular content is converted only when accessed.  When enabled, {@code List} and {@code Map} fields
+     * of strongly typed models holding converted modular content are filled with read-only collections which convert
+     * each item the first time it is accessed, rather than converting every referenced item up front.
+     * <p>
+     * Fields of type {@code Supplier<T>} are filled with a supplier converting the referenced item on first access
+     * whether or not this is enabled.
+     * @param lazyModularContent true to convert modular content on first access
+     */
+    public void setLazyModularContent(boolean lazyModularContent) {
+        stronglyTypedContentItemConverter.setLazyModularContent(lazyModularContent);
+        invalidateResults();
     }
 
+    /**
+     * Sets the executor asynchronous requests are completed on.  Once the I/O engine has received a response, parsing
+     * it, resolving rich text, converting it to strongly typed models, storing it in the {@link CacheManager} and
+     * completing the returned future all happen on this executor, so slow work does not hold up the I/O threads
+     * serving every other connection.  Callbacks attached to the returned futures with the non-async
+     * {@link CompletableFuture} methods run on this executor too, or on the calling thread if the future is already
+     * complete, such as when the response is served from a cache.
+     * @param callbackExecutor The executor to complete requests on, {@link ForkJoinPool#commonPool()} by default, or
+     *                         null to complete them on the I/O threads, which suits only cheap callbacks
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor == null ? Runnable::run : callbackExecutor;
+    }
+
+    /**
+     * Sets the {@link CacheManager} responses are resolved through.  When no cache manager is set, responses are
+     * deserialized straight from the HTTP response stream without building an intermediate {@link JsonNode} tree.
+     * @param cacheManager The cache manager to use, or null to disable caching
+     */
     public void setCacheManager(CacheManager cacheManager) {
-        this.cacheManager = cacheManager;
+        this.cacheManager = cacheManager == null ? PASS_THROUGH_CACHE_MANAGER : cacheManager;
+    }
+
+    /**
+     * Sets the {@link ResultCache} the final results of content item requests are cached in, after rich text
+     * resolution and conversion to strongly typed models.  Results are only cached along with responses cached by the
+     * {@link CacheManager}.  As cached responses are shared between callers, their items, modular content and element
+     * maps are made read-only before they are cached.
+     * @param resultCache The result cache to use, or null to build every result anew
+     * @see #setCacheManager(CacheManager)
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Gets the {@link ResultCache} the final results of content item requests are cached in.
+     * @return The result cache, or null if results are not cached
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the {@link HttpTransport} requests are sent through.  The transport created by this client is closed when
+     * replaced, a transport set through this method is closed along with the client.
+     * @param httpTransport The transport to use, or null to go back to an {@link ApacheHttpTransport}
+     * @throws IOException Thrown if the replaced transport fails to shut down cleanly
+     */
+    public void setHttpTransport(HttpTransport httpTransport) throws IOException {
+        HttpTransport previous = this.httpTransport;
+        boolean ownedPrevious = ownsHttpTransport;
+        if (httpTransport == null) {
+            ApacheHttpTransport apacheHttpTransport = new ApacheHttpTransport(deliveryOptions);
+            apacheHttpTransport.setMetricsListener(metricsListener);
+            if (maxConnections > 0) {
+                apacheHttpTransport.setMaxConnections(maxConnections);
+            }
+            this.httpTransport = apacheHttpTransport;
+            ownsHttpTransport = true;
+        } else {
+            this.httpTransport = httpTransport;
+            ownsHttpTransport = false;
+        }
+        if (ownedPrevious && previous != this.httpTransport) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Sets the {@link DeliveryMetricsListener} notified of the timing of every request phase.  Connection lease
+     * times are only reported by an {@link ApacheHttpTransport}.
+     * @param metricsListener The listener to notify, or null to stop timing requests
+     * @see HistogramMetricsListener
+     */
+    public void setMetricsListener(DeliveryMetricsListener metricsListener) {
+        this.metricsListener = metricsListener == null ? NO_OP_METRICS_LISTENER : metricsListener;
+        if (httpTransport instanceof ApacheHttpTransport) {
+            ((ApacheHttpTransport) httpTransport).setMetricsListener(this.metricsListener);
+        }
+    }
+
+    /**
+     * Gets the {@link DeliveryMetricsListener} notified of the timing of every request phase.
+     * @return The listener, or null if requests are not timed
+     */
+    public DeliveryMetricsListener getMetricsListener() {
+        return metricsListener == NO_OP_METRICS_LISTENER ? null : metricsListener;
+    }
+
+    /**
+     * Gets the {@link HttpTransport} requests are sent through.
+     * @return The transport used by this client
+     */
+    public HttpTransport getHttpTransport() {
+        return httpTransport;
     }
 
+    /**
+     * Sets the maximum number of pooled HTTP connections, both in total and to the Delivery API host.  Takes effect
+     * immediately on an {@link ApacheHttpTransport}, including its asynchronous connection pool, and applies to the
+     * transport this client creates if it is reset.  The {@link DeliveryOptions} of the client are left as they are, so
+     * they can be shared with other clients.
+     * @param maxConnections The maximum number of connections
+     * @see DeliveryOptions#setMaxConnections(int)
+     */
     public void setMaxConnections(int maxConnections) {
-        connManager.setDefaultMaxPerRoute(maxConnections);
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("The maximum number of connections must be positive.");
+        }
+        this.maxConnections = maxConnections;
+        if (httpTransport instanceof ApacheHttpTransport) {
+            ((ApacheHttpTransport) httpTransport).setMaxConnections(maxConnections);
+        }
+    }
+
+    /**
+     * Gets live statistics of the connection pool used by the synchronous retrieval methods.
+     * @return The numbers of leased, available and pending connections, and the maximum number of connections
+     * @throws IllegalStateException Thrown if the transport in use is not an {@link ApacheHttpTransport}
+     */
+    public PoolStats getConnectionPoolStats() {
+        return getApacheHttpTransport().getConnectionPoolStats();
+    }
+
+    /**
+     * Gets live statistics of the connection pool used by the {@code Async} retrieval methods.
+     * @return The numbers of leased, available and pending connections, and the maximum number of connections
+     * @throws IllegalStateException Thrown if the transport in use is not an {@link ApacheHttpTransport}
+     */
+    public PoolStats getAsyncConnectionPoolStats() {
+        return getApacheHttpTransport().getAsyncConnectionPoolStats();
+    }
+
+    /**
+     * Gets the current adaptive concurrency limit, the number of requests allowed in flight at once.
+     * @return The concurrency limit
+     * @see DeliveryOptions#setConcurrencyLimitEnabled(boolean)
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimiter.getLimit();
+    }
+
+    /**
+     * Gets the number of requests in flight holding a concurrency limit permit.
+     * @return The number of requests in flight, always 0 when the concurrency limit is disabled
+     */
+    public int getInFlightRequestCount() {
+        return concurrencyLimiter.getInFlight();
+    }
+
+    /**
+     * Releases the connection pools and threads held by this client and its transport.
+     * @throws IOException Thrown if the transport fails to shut down cleanly
+     */
+    @Override
+    public void close() throws IOException {
+        httpTransport.close();
+        ScheduledExecutorService executorService = scheduler;
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
     }
 
     protected HttpUriRequest buildGetRequest(String apiCall, List<NameValuePair> nameValuePairs) {
@@ -368,9 +726,18 @@ public class DeliveryClient {
             );
         }
         requestBuilder.setHeader(HttpHeaders.ACCEPT, "application/json");
+        if (deliveryOptions.isCompressionEnabled()) {
+            requestBuilder.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
         return requestBuilder;
     }
 
+    private HttpUriRequest buildNextPageRequest(Pagination pagination) {
+        RequestBuilder requestBuilder = RequestBuilder.get(pagination.getNextPage());
+        requestBuilder = addHeaders(requestBuilder);
+        return requestBuilder.build();
+    }
+
     private String getBaseUrl() {
         if (deliveryOptions.isUsePreviewApi()) {
             return String.format(deliveryOptions.getPreviewEndpoint(), deliveryOptions.getProjectId());
@@ -379,20 +746,317 @@ public class DeliveryClient {
         }
     }
 
+    private ContentItemsListingResponse postProcess(ContentItemsListingResponse contentItemsListingResponse) {
+        contentItemsListingResponse.setStronglyTypedContentItemConverter(stronglyTypedContentItemConverter);
+        long start = startTiming();
+        newRichTextElementConverter().process(contentItemsListingResponse.getItems());
+        stopTiming(start, ITEMS, metricsListener::onRichTextProcessed);
+        return contentItemsListingResponse;
+    }
+
+    private ContentItemResponse postProcess(ContentItemResponse contentItemResponse) {
+        contentItemResponse.setStronglyTypedContentItemConverter(stronglyTypedContentItemConverter);
+        long start = startTiming();
+        newRichTextElementConverter().process(contentItemResponse.getItem());
+        stopTiming(start, ITEMS, metricsListener::onRichTextProcessed);
+        return contentItemResponse;
+    }
+
+    private <T> List<T> castTo(ContentItemsListingResponse contentItemsListingResponse, Class<T> tClass) {
+        long start = startTiming();
+        List<T> items = contentItemsListingResponse.castTo(tClass);
+        stopTiming(start, ITEMS, metricsListener::onCastTo);
+        return items;
+    }
+
+    private <T> T castTo(ContentItemResponse contentItemResponse, Class<T> tClass) {
+        long start = startTiming();
+        T item = contentItemResponse.castTo(tClass);
+        stopTiming(start, ITEMS, metricsListener::onCastTo);
+        return item;
+    }
+
+    private void invalidateResults() {
+        resultCacheVersion.incrementAndGet();
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private RichTextElementConverter newRichTextElementConverter() {
+        return new RichTextElementConverter(
+                getContentLinkUrlResolver(),
+                getBrokenLinkUrlResolver(),
+                getRichTextElementResolver(),
+                templateEngineConfig,
+                stronglyTypedContentItemConverter
+        );
+    }
+
     private <T> T executeRequest(HttpUriRequest request, Class<T> tClass) throws IOException {
+        return executeRequest(request, tClass, null, Function.identity());
+    }
+
+    /**
+     * Executes a request and builds the result from the response, serving the result from the {@link ResultCache} if
+     * it was built from the same response before.
+     * @param resultClass The class the result is cached under, or null to not cache the result
+     */
+    private <T, R> R executeRequest(
+            HttpUriRequest request, Class<T> tClass, Class<?> resultClass, Function<T, R> resultBuilder)
+            throws IOException {
         String requestUri = request.getURI().toString();
-        logger.info("HTTP {} - {} - {}", request.getMethod(), request.getAllHeaders(), requestUri);
-        JsonNode jsonNode = cacheManager.resolveRequest(requestUri, () -> {
-            HttpResponse response = httpClient.execute(request);
-            handleErrorIfNecessary(response);
-            InputStream inputStream = response.getEntity().getContent();
-            JsonNode node = objectMapper.readValue(inputStream, JsonNode.class);
-            logger.info("{} - {}", response.getStatusLine(), requestUri);
-            logger.debug("{} - {}:\n{}", request.getMethod(), requestUri, node);
-            inputStream.close();
-            return node;
-        });
-        return objectMapper.treeToValue(jsonNode, tClass);
+        logRequest(request, requestUri);
+        DeliveryRequestExecutor executor = new DeliveryRequestExecutor(request, requestUri);
+        ObjectReader objectReader = getObjectReader(tClass);
+        if (cacheManager == PASS_THROUGH_CACHE_MANAGER) {
+            //Nobody needs the tree, bind directly from the response stream
+            return resultBuilder.apply(executor.execute(objectReader));
+        }
+        try {
+            return buildResult(
+                    executor, objectReader, cacheManager.resolveResponse(requestUri, executor), resultClass,
+                    resultBuilder);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<T> tClass) {
+        return executeRequestAsync(request, tClass, null, Function.identity());
+    }
+
+    private <T, R> CompletableFuture<R> executeRequestAsync(
+            HttpUriRequest request, Class<T> tClass, Class<?> resultClass, Function<T, R> resultBuilder) {
+        String requestUri = request.getURI().toString();
+        logRequest(request, requestUri);
+        DeliveryRequestExecutor executor = new DeliveryRequestExecutor(request, requestUri);
+        ObjectReader objectReader = getObjectReader(tClass);
+        if (cacheManager == PASS_THROUGH_CACHE_MANAGER) {
+            return executor.executeAsync(objectReader, resultBuilder);
+        }
+        return cacheManager.resolveResponseAsync(requestUri, executor)
+                .thenApply(response -> {
+                    try {
+                        return buildResult(executor, objectReader, response, resultClass, resultBuilder);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    } catch (UncheckedIOException e) {
+                        throw new CompletionException(e.getCause());
+                    }
+                });
+    }
+
+    private <T, R> R buildResult(DeliveryRequestExecutor executor, ObjectReader objectReader, CachedResponse response,
+                                 Class<?> resultClass, Function<T, R> resultBuilder) throws IOException {
+        ResultCache cache = resultCache;
+        if (cache == null || resultClass == null) {
+            return resultBuilder.apply(bindResponse(executor, objectReader, response));
+        }
+        Object source = response.getSource();
+        R result = cache.get(executor.requestUri, resultClass, source);
+        if (result != null) {
+            if (metricsListener != NO_OP_METRICS_LISTENER) {
+                metricsListener.onCacheLookup(executor.endpoint, !executor.invoked);
+            }
+            return result;
+        }
+        //Read the configuration version first, so a result built with outdated resolvers is never cached
+        long version = resultCacheVersion.get();
+        result = resultBuilder.apply(bindResponse(executor, objectReader, response));
+        if (version == resultCacheVersion.get()) {
+            result = makeReadOnly(result);
+            cache.put(executor.requestUri, resultClass, source, result);
+        }
+        return result;
+    }
+
+    //Results shared through the result cache must not be modified by one caller under another
+    @SuppressWarnings("unchecked")
+    private static <R> R makeReadOnly(R result) {
+        if (result instanceof ContentItemsListingResponse) {
+            ((ContentItemsListingResponse) result).makeReadOnly();
+        } else if (result instanceof ContentItemResponse) {
+            ((ContentItemResponse) result).makeReadOnly();
+        } else if (result instanceof List) {
+            //The typed items of a listing, which the caller gets the wrapper of along with everybody else
+            return (R) Collections.unmodifiableList((List<?>) result);
+        }
+        return result;
+    }
+
+    //Reports a request served the response of another request in flight as a cache miss
+    static void markInvoked(HttpRequestExecutor executor) {
+        if (executor instanceof DeliveryClient.DeliveryRequestExecutor) {
+            ((DeliveryClient.DeliveryRequestExecutor) executor).invoked = true;
+        }
+    }
+
+    private static void logRequest(HttpUriRequest request, String requestUri) {
+        logger.info("HTTP {} - {}", request.getMethod(), requestUri);
+        if (logger.isDebugEnabled()) {
+            logger.debug("HTTP {} - {} - {}", request.getMethod(), request.getAllHeaders(), requestUri);
+        }
+    }
+
+    private <T> T bindResponse(DeliveryRequestExecutor executor, ObjectReader objectReader, CachedResponse response)
+            throws IOException {
+        if (!response.isCompact()) {
+            return bindTree(executor, objectReader, response.getBody());
+        }
+        //Bind straight from the bytes, the tree would only be thrown away
+        try (InputStream inputStream = response.openContent()) {
+            if (metricsListener == NO_OP_METRICS_LISTENER) {
+                return objectReader.readValue(inputStream);
+            }
+            metricsListener.onCacheLookup(executor.endpoint, !executor.invoked);
+            long start = java.lang.System.nanoTime();
+            T value = objectReader.readValue(inputStream);
+            metricsListener.onJsonParsed(executor.endpoint, java.lang.System.nanoTime() - start);
+            return value;
+        }
+    }
+
+    private <T> T bindTree(DeliveryRequestExecutor executor, ObjectReader objectReader, JsonNode jsonNode)
+            throws IOException {
+        if (metricsListener == NO_OP_METRICS_LISTENER) {
+            return objectReader.readValue(jsonNode);
+        }
+        metricsListener.onCacheLookup(executor.endpoint, !executor.invoked);
+        long start = java.lang.System.nanoTime();
+        T value = objectReader.readValue(jsonNode);
+        metricsListener.onTreeBound(executor.endpoint, java.lang.System.nanoTime() - start);
+        return value;
+    }
+
+    private long startTiming() {
+        return metricsListener == NO_OP_METRICS_LISTENER ? 0 : java.lang.System.nanoTime();
+    }
+
+    private void stopTiming(long start, String endpoint, PhaseCallback callback) {
+        if (start != 0) {
+            callback.record(endpoint, java.lang.System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Determines the Delivery API endpoint a request goes to, for reporting metrics.
+     * @param uri The request URI
+     * @return {@code items}, {@code types}, {@code taxonomies}, or {@code other}
+     */
+    static String getEndpoint(URI uri) {
+        String path = uri.getRawPath();
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (ITEMS.equals(segment) || TYPES.equals(segment) || TAXONOMIES.equals(segment)) {
+                    return segment;
+                }
+            }
+        }
+        return "other";
+    }
+
+    private ObjectReader getObjectReader(Class<?> tClass) {
+        return objectReaders.computeIfAbsent(tClass, clazz -> objectMapper.readerFor(clazz));
+    }
+
+    private ApacheHttpTransport getApacheHttpTransport() {
+        if (!(httpTransport instanceof ApacheHttpTransport)) {
+            throw new IllegalStateException("Connection pool statistics require an ApacheHttpTransport.");
+        }
+        return (ApacheHttpTransport) httpTransport;
+    }
+
+    //Runs delayed retries of asynchronous requests, and times hedged requests
+    private ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService executorService = scheduler;
+        if (executorService == null) {
+            synchronized (this) {
+                executorService = scheduler;
+                if (executorService == null) {
+                    executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "kentico-delivery-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = executorService;
+                }
+            }
+        }
+        return executorService;
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == SC_TOO_MANY_REQUESTS ||
+                status == HttpStatus.SC_INTERNAL_SERVER_ERROR ||
+                status == HttpStatus.SC_BAD_GATEWAY ||
+                status == HttpStatus.SC_SERVICE_UNAVAILABLE ||
+                status == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Determines how long to wait before retrying a failed request.
+     * @param request The failed request
+     * @param attempt The number of retries made so far
+     * @param response The response of the failed request, or null if it failed to connect
+     * @return The delay in milliseconds, or -1 if the request should not be retried
+     */
+    private long getRetryDelayMillis(HttpUriRequest request, int attempt, HttpResponse response) {
+        if (attempt >= deliveryOptions.getMaxRetryAttempts() || !HttpGet.METHOD_NAME.equals(request.getMethod())) {
+            return -1;
+        }
+        long retryAfter = response == null ? -1 : getRetryAfterMillis(response);
+        if (retryAfter >= 0) {
+            return retryAfter <= deliveryOptions.getRetryMaxDelayMillis() ? retryAfter : -1;
+        }
+        //Full jitter keeps retrying clients from synchronizing into waves
+        long ceiling = Math.min(
+                deliveryOptions.getRetryMaxDelayMillis(),
+                deliveryOptions.getRetryBaseDelayMillis() << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(Math.max(ceiling, 0) + 1);
+    }
+
+    private static long getRetryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - java.lang.System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Replaces a compressed response entity with one decompressing it on the fly, so the parser reads the decoded
+     * JSON straight off the network stream.
+     */
+    private static void decodeContentIfNecessary(HttpResponse response) throws IOException {
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        HttpEntity entity = response.getEntity();
+        if (header == null || entity == null) {
+            return;
+        }
+        String contentEncoding = header.getValue().trim().toLowerCase(Locale.ROOT);
+        InputStreamFactory decoder;
+        if ("gzip".equals(contentEncoding) || "x-gzip".equals(contentEncoding)) {
+            decoder = inputStream -> new GZIPInputStream(inputStream, DECOMPRESSION_BUFFER_SIZE);
+        } else if ("deflate".equals(contentEncoding)) {
+            //Handles both zlib wrapped and raw deflate streams, as servers disagree on which one deflate means
+            decoder = DeflateInputStream::new;
+        } else if ("identity".equals(contentEncoding) || contentEncoding.isEmpty()) {
+            return;
+        } else {
+            EntityUtils.consumeQuietly(entity);
+            throw new IOException(String.format("Unsupported Content-Encoding: %s", header.getValue()));
+        }
+        response.setEntity(new DecompressingEntity(entity, decoder));
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
     }
 
     private void handleErrorIfNecessary(HttpResponse response) throws IOException {
@@ -402,13 +1066,481 @@ public class DeliveryClient {
             throw new IOException("Unknown error with Kentico API.  Kentico is likely suffering site issues.");
         } else if (status >= 400) {
             logger.error("Kentico API request error, status: ", status);
-            InputStream inputStream = response.getEntity().getContent();
-            KenticoError kenticoError = objectMapper.readValue(inputStream, KenticoError.class);
-            inputStream.close();
+            KenticoError kenticoError;
+            try (InputStream inputStream = response.getEntity().getContent()) {
+                kenticoError = objectMapper.readValue(inputStream, KenticoError.class);
+            }
             throw new KenticoErrorException(kenticoError);
         }
     }
 
+    private class DeliveryRequestExecutor implements HttpRequestExecutor {
+
+        private final HttpUriRequest request;
+        private final String requestUri;
+        private final String endpoint;
+        private final DeliveryMetricsListener metrics = metricsListener;
+        //Tells a cache hit from a miss once the cache manager resolved the request
+        private volatile boolean invoked;
+
+        DeliveryRequestExecutor(HttpUriRequest request, String requestUri) {
+            this.request = request;
+            this.requestUri = requestUri;
+            this.endpoint = getEndpoint(request.getURI());
+        }
+
+        @Override
+        public JsonNode execute() throws IOException {
+            invoked = true;
+            return execute(getObjectReader(JsonNode.class));
+        }
+
+        @Override
+        public CompletableFuture<JsonNode> executeAsync() {
+            invoked = true;
+            return executeAsync(getObjectReader(JsonNode.class), Function.<JsonNode>identity());
+        }
+
+        @Override
+        public CachedResponse executeConditionally(CachedResponse previous) throws IOException {
+            invoked = true;
+            return readCachedResponse(send(buildConditionalRequest(previous)), previous, false);
+        }
+
+        @Override
+        public CompletableFuture<CachedResponse> executeConditionallyAsync(CachedResponse previous) {
+            invoked = true;
+            return executeAsync(
+                    buildConditionalRequest(previous), response -> readCachedResponse(response, previous, false));
+        }
+
+        @Override
+        public CachedResponse executeConditionallyUnparsed(CachedResponse previous) throws IOException {
+            invoked = true;
+            return readCachedResponse(send(buildConditionalRequest(previous)), previous, true);
+        }
+
+        @Override
+        public CompletableFuture<CachedResponse> executeConditionallyUnparsedAsync(CachedResponse previous) {
+            invoked = true;
+            return executeAsync(
+                    buildConditionalRequest(previous), response -> readCachedResponse(response, previous, true));
+        }
+
+        @Override
+        public HttpRequestExecutor detached() {
+            return new DeliveryRequestExecutor(request, requestUri);
+        }
+
+        <T> T execute(ObjectReader objectReader) throws IOException {
+            return readResponse(send(request), objectReader);
+        }
+
+        //The result is built while reading, as a dependent stage could run on the caller if the response came first
+        <T, R> CompletableFuture<R> executeAsync(ObjectReader objectReader, Function<T, R> resultBuilder) {
+            return executeAsync(request, response -> resultBuilder.apply(readResponse(response, objectReader)));
+        }
+
+        private <T> CompletableFuture<T> executeAsync(HttpUriRequest httpUriRequest, ResponseReader<T> reader) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            sendAsync(httpUriRequest, 0).whenComplete((response, e) -> {
+                //Everything downstream of the future runs where it completes, which must not be an I/O thread
+                try {
+                    callbackExecutor.execute(() -> {
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                            return;
+                        }
+                        try {
+                            future.complete(reader.read(response));
+                        } catch (IOException | RuntimeException readException) {
+                            future.completeExceptionally(readException);
+                        }
+                    });
+                } catch (RejectedExecutionException rejected) {
+                    if (response != null) {
+                        EntityUtils.consumeQuietly(response.getEntity());
+                    }
+                    future.completeExceptionally(
+                            new IOException("The callback executor rejected the response", rejected));
+                }
+            });
+            return future;
+        }
+
+        private HttpResponse send(HttpUriRequest httpUriRequest) throws IOException {
+            for (int attempt = 0; ; attempt++) {
+                CircuitBreaker.Permit permit = circuitBreaker.acquire(
+                        TimeUnit.MILLISECONDS.toNanos(deliveryOptions.getCircuitBreakerOpenMillis()));
+                if (permit == CircuitBreaker.Permit.DENIED) {
+                    throw new CircuitBreakerOpenException(requestUri);
+                }
+                HttpResponse response;
+                long delay;
+                try {
+                    response = transmit(httpUriRequest);
+                } catch (ConcurrencyLimitExceededException e) {
+                    //Shedding load locally says nothing about the health of the Delivery API
+                    circuitBreaker.release(permit);
+                    throw e;
+                } catch (RuntimeException | Error e) {
+                    circuitBreaker.release(permit);
+                    throw e;
+                } catch (IOException e) {
+                    circuitBreaker.recordFailure(deliveryOptions.getCircuitBreakerFailureThreshold());
+                    delay = getRetryDelayMillis(httpUriRequest, attempt, null);
+                    if (delay < 0) {
+                        throw e;
+                    }
+                    logger.warn("Retrying {} in {} ms after error: {}", requestUri, delay, e.getMessage());
+                    sleep(delay);
+                    continue;
+                }
+                if (!isRetryableStatus(response.getStatusLine().getStatusCode())) {
+                    circuitBreaker.recordSuccess();
+                    return response;
+                }
+                circuitBreaker.recordFailure(deliveryOptions.getCircuitBreakerFailureThreshold());
+                delay = getRetryDelayMillis(httpUriRequest, attempt, response);
+                if (delay < 0) {
+                    return response;
+                }
+                logger.warn("Retrying {} in {} ms after {}", requestUri, delay, response.getStatusLine());
+                EntityUtils.consumeQuietly(response.getEntity());
+                sleep(delay);
+            }
+        }
+
+        private CompletableFuture<HttpResponse> sendAsync(HttpUriRequest httpUriRequest, int attempt) {
+            CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+            CircuitBreaker.Permit permit = circuitBreaker.acquire(
+                    TimeUnit.MILLISECONDS.toNanos(deliveryOptions.getCircuitBreakerOpenMillis()));
+            if (permit == CircuitBreaker.Permit.DENIED) {
+                future.completeExceptionally(new CircuitBreakerOpenException(requestUri));
+                return future;
+            }
+            CompletableFuture<HttpResponse> transmitted;
+            try {
+                transmitted = transmitAsync(httpUriRequest);
+            } catch (RuntimeException | Error e) {
+                circuitBreaker.release(permit);
+                throw e;
+            }
+            transmitted.whenComplete((response, e) -> {
+                if (e == null) {
+                    if (!isRetryableStatus(response.getStatusLine().getStatusCode())) {
+                        circuitBreaker.recordSuccess();
+                        future.complete(response);
+                        return;
+                    }
+                    circuitBreaker.recordFailure(deliveryOptions.getCircuitBreakerFailureThreshold());
+                    long delay = getRetryDelayMillis(httpUriRequest, attempt, response);
+                    if (delay < 0) {
+                        future.complete(response);
+                        return;
+                    }
+                    logger.warn("Retrying {} in {} ms after {}", requestUri, delay, response.getStatusLine());
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    retryAsync(httpUriRequest, attempt, future, delay);
+                    return;
+                }
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!(cause instanceof IOException) || cause instanceof ConcurrencyLimitExceededException) {
+                    //Neither tells anything about the health of the Delivery API
+                    circuitBreaker.release(permit);
+                    future.completeExceptionally(cause);
+                    return;
+                }
+                circuitBreaker.recordFailure(deliveryOptions.getCircuitBreakerFailureThreshold());
+                long delay = getRetryDelayMillis(httpUriRequest, attempt, null);
+                if (delay < 0) {
+                    future.completeExceptionally(cause);
+                    return;
+                }
+                logger.warn("Retrying {} in {} ms after error: {}", requestUri, delay, cause.getMessage());
+                retryAsync(httpUriRequest, attempt, future, delay);
+            });
+            return future;
+        }
+
+        private void retryAsync(
+                HttpUriRequest httpUriRequest, int attempt, CompletableFuture<HttpResponse> future, long delay) {
+            try {
+                getScheduler().schedule(() -> sendAsync(httpUriRequest, attempt + 1).whenComplete((response, e) -> {
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                    } else {
+                        future.complete(response);
+                    }
+                }), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(
+                        new IOException("The client was closed before the request could be retried", e));
+            }
+        }
+
+        private HttpResponse transmit(HttpUriRequest httpUriRequest) throws IOException {
+            //Hedged requests take a permit per attempt
+            if (!deliveryOptions.isConcurrencyLimitEnabled() || isHedged(httpUriRequest)) {
+                return dispatch(httpUriRequest);
+            }
+            concurrencyLimiter.acquire(requestUri);
+            long start = java.lang.System.nanoTime();
+            boolean dropped = true;
+            try {
+                HttpResponse response = dispatch(httpUriRequest);
+                dropped = isRetryableStatus(response.getStatusLine().getStatusCode());
+                return response;
+            } finally {
+                concurrencyLimiter.release(java.lang.System.nanoTime() - start, dropped);
+            }
+        }
+
+        private CompletableFuture<HttpResponse> transmitAsync(HttpUriRequest httpUriRequest) {
+            if (!deliveryOptions.isConcurrencyLimitEnabled() || isHedged(httpUriRequest)) {
+                return dispatchAsync(httpUriRequest);
+            }
+            return concurrencyLimiter.acquireAsync(requestUri, getScheduler())
+                    .thenCompose(permit -> releaseOnCompletion(dispatchAsync(httpUriRequest)));
+        }
+
+        /**
+         * Sends an attempt of a hedged request, taking a concurrency limit permit of its own.  A hedge is only sent
+         * while the circuit breaker is closed and a permit is free right away, so it never waits for capacity and
+         * never doubles the probe of a breaker which is testing the Delivery API.
+         */
+        private CompletableFuture<HttpResponse> sendAttempt(HttpUriRequest httpUriRequest, boolean hedge) {
+            if (hedge && circuitBreaker.isOpen()) {
+                return null;
+            }
+            if (!deliveryOptions.isConcurrencyLimitEnabled()) {
+                return httpTransport.executeAsync(httpUriRequest);
+            }
+            if (hedge) {
+                return concurrencyLimiter.tryAcquire()
+                        ? releaseOnCompletion(httpTransport.executeAsync(httpUriRequest)) : null;
+            }
+            return concurrencyLimiter.acquireAsync(requestUri, getScheduler())
+                    .thenCompose(permit -> releaseOnCompletion(httpTransport.executeAsync(httpUriRequest)));
+        }
+
+        //Returns the attempt itself, so cancelling it still reaches the transport
+        private CompletableFuture<HttpResponse> releaseOnCompletion(CompletableFuture<HttpResponse> attempt) {
+            long start = java.lang.System.nanoTime();
+            attempt.whenComplete((response, e) -> {
+                //A cancelled hedge says nothing about the load of the Delivery API
+                boolean dropped = e != null
+                        ? !(e instanceof CancellationException)
+                        : isRetryableStatus(response.getStatusLine().getStatusCode());
+                concurrencyLimiter.release(java.lang.System.nanoTime() - start, dropped);
+            });
+            return attempt;
+        }
+
+        private HttpResponse dispatch(HttpUriRequest httpUriRequest) throws IOException {
+            if (metrics == NO_OP_METRICS_LISTENER) {
+                return dispatchUntimed(httpUriRequest);
+            }
+            long start = java.lang.System.nanoTime();
+            HttpResponse response = dispatchUntimed(httpUriRequest);
+            metrics.onResponseReceived(endpoint, java.lang.System.nanoTime() - start);
+            return response;
+        }
+
+        private HttpResponse dispatchUntimed(HttpUriRequest httpUriRequest) throws IOException {
+            if (!isHedged(httpUriRequest)) {
+                return httpTransport.execute(httpUriRequest);
+            }
+            CompletableFuture<HttpResponse> future = dispatchAsyncUntimed(httpUriRequest);
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a hedged request");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private CompletableFuture<HttpResponse> dispatchAsync(HttpUriRequest httpUriRequest) {
+            if (metrics == NO_OP_METRICS_LISTENER) {
+                return dispatchAsyncUntimed(httpUriRequest);
+            }
+            long start = java.lang.System.nanoTime();
+            return dispatchAsyncUntimed(httpUriRequest).whenComplete((response, e) -> {
+                if (e == null) {
+                    metrics.onResponseReceived(endpoint, java.lang.System.nanoTime() - start);
+                }
+            });
+        }
+
+        private CompletableFuture<HttpResponse> dispatchAsyncUntimed(HttpUriRequest httpUriRequest) {
+            if (!isHedged(httpUriRequest)) {
+                return httpTransport.executeAsync(httpUriRequest);
+            }
+            return requestHedger.execute(this::sendAttempt, httpUriRequest, deliveryOptions, getScheduler());
+        }
+
+        private boolean isHedged(HttpUriRequest httpUriRequest) {
+            return deliveryOptions.isHedgingEnabled() && HttpGet.METHOD_NAME.equals(httpUriRequest.getMethod());
+        }
+
+        private void sleep(long delay) throws InterruptedIOException {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry a request");
+            }
+        }
+
+        private <T> T readResponse(HttpResponse response, ObjectReader objectReader) throws IOException {
+            try {
+                decodeContentIfNecessary(response);
+                handleErrorIfNecessary(response);
+                T value;
+                try (InputStream inputStream = response.getEntity().getContent()) {
+                    if (metrics == NO_OP_METRICS_LISTENER) {
+                        value = objectReader.readValue(inputStream);
+                    } else {
+                        //Parsing pulls the body off the network, so time spent blocked in reads is told apart from
+                        //parsing
+                        TimedInputStream timedInputStream = new TimedInputStream(inputStream);
+                        long start = java.lang.System.nanoTime();
+                        value = objectReader.readValue(timedInputStream);
+                        long readNanos = timedInputStream.getReadNanos();
+                        metrics.onBodyRead(endpoint, readNanos);
+                        metrics.onJsonParsed(endpoint, java.lang.System.nanoTime() - start - readNanos);
+                    }
+                }
+                logger.info("{} - {}", response.getStatusLine(), requestUri);
+                logger.debug("{} - {}:\n{}", request.getMethod(), requestUri, value);
+                return value;
+            } finally {
+                //Hands the connection back to the pool on error responses and parse failures too
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        }
+
+        private byte[] readContent(HttpResponse response) throws IOException {
+            byte[] content;
+            try {
+                decodeContentIfNecessary(response);
+                handleErrorIfNecessary(response);
+                if (metrics == NO_OP_METRICS_LISTENER) {
+                    content = EntityUtils.toByteArray(response.getEntity());
+                } else {
+                    long start = java.lang.System.nanoTime();
+                    content = EntityUtils.toByteArray(response.getEntity());
+                    metrics.onBodyRead(endpoint, java.lang.System.nanoTime() - start);
+                }
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            logger.info("{} - {}", response.getStatusLine(), requestUri);
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} - {}:\n{}", request.getMethod(), requestUri,
+                        new String(content, StandardCharsets.UTF_8));
+            }
+            return content;
+        }
+
+        private HttpUriRequest buildConditionalRequest(CachedResponse previous) {
+            if (previous == null || !previous.hasValidators()) {
+                return request;
+            }
+            RequestBuilder requestBuilder = RequestBuilder.copy(request);
+            if (previous.getETag() != null) {
+                requestBuilder.setHeader(HttpHeaders.IF_NONE_MATCH, previous.getETag());
+            }
+            if (previous.getLastModified() != null) {
+                requestBuilder.setHeader(HttpHeaders.IF_MODIFIED_SINCE, previous.getLastModified());
+            }
+            return requestBuilder.build();
+        }
+
+        private CachedResponse readCachedResponse(HttpResponse response, CachedResponse previous, boolean unparsed)
+                throws IOException {
+            String eTag = getHeaderValue(response, HttpHeaders.ETAG);
+            String lastModified = getHeaderValue(response, HttpHeaders.LAST_MODIFIED);
+            String cacheControl = getHeaderValue(response, HttpHeaders.CACHE_CONTROL);
+            if (previous != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                logger.info("{} - {}", response.getStatusLine(), requestUri);
+                EntityUtils.consumeQuietly(response.getEntity());
+                return previous.revalidated(eTag, lastModified, cacheControl);
+            }
+            if (unparsed) {
+                return new CachedResponse(readContent(response), eTag, lastModified, cacheControl);
+            }
+            JsonNode body = readResponse(response, getObjectReader(JsonNode.class));
+            return new CachedResponse(body, eTag, lastModified, cacheControl);
+        }
+
+        private String getHeaderValue(HttpResponse response, String name) {
+            Header header = response.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+    }
+
+    private interface ResponseReader<T> {
+        T read(HttpResponse response) throws IOException;
+    }
+
+    private interface PhaseCallback {
+        void record(String endpoint, long nanos);
+    }
+
+    private static class TimedInputStream extends FilterInputStream {
+
+        private long readNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = java.lang.System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                readNanos += java.lang.System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = java.lang.System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                readNanos += java.lang.System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = java.lang.System.nanoTime();
+            try {
+                return super.skip(n);
+            } finally {
+                readNanos += java.lang.System.nanoTime() - start;
+            }
+        }
+
+        long getReadNanos() {
+            return readNanos;
+        }
+    }
+
     private void reconfigureDeserializer() {
         objectMapper = new ObjectMapper();
 
@@ -417,5 +1549,6 @@ public class DeliveryClient {
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
         objectMapper.registerModule(module);
+        objectReaders.clear();
     }
 }
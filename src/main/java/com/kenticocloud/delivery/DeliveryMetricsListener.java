@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+/**
+ * Receives a timing breakdown of every request made by a {@link DeliveryClient}.
+ * <p>
+ * Each callback names the Delivery API endpoint the request went to, such as {@code items}, {@code types} or
+ * {@code taxonomies}, and reports the duration of one phase in nanoseconds.  Phases are measured independently, and
+ * some overlap: the time to first byte includes waiting for a pooled connection, and as responses are parsed while they
+ * are downloaded, the body download time is the time spent waiting for data during parsing.  Callbacks are invoked on
+ * the thread doing the work, so implementations must be thread safe and cheap.  All methods do nothing by default.
+ * <pre>
+ * HistogramMetricsListener metrics = new HistogramMetricsListener();
+ * client.setMetricsListener(metrics);
+ * </pre>
+ * @see HistogramMetricsListener
+ */
+public interface DeliveryMetricsListener {
+
+    /**
+     * Called after a blocking request obtained a pooled connection.  Only reported by {@link ApacheHttpTransport}.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent waiting for the connection
+     */
+    default void onConnectionLeased(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called when the status and headers of a response arrived.  With the asynchronous transport, the entire body has
+     * been received by then.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time from sending the request until the response arrived
+     */
+    default void onResponseReceived(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after a response body was read.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent waiting for body data
+     */
+    default void onBodyRead(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after a response body was parsed.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent parsing, excluding waiting for body data
+     */
+    default void onJsonParsed(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after a cached JSON tree was bound to a response object.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent binding the tree
+     */
+    default void onTreeBound(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after the rich text elements of the retrieved content items were processed.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent resolving links and inline content items
+     */
+    default void onRichTextProcessed(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after retrieved content items were converted to a strongly typed model by a retrieval method taking a
+     * class argument.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param nanos The time spent converting
+     */
+    default void onCastTo(String endpoint, long nanos) {
+    }
+
+    /**
+     * Called after a request was resolved through the {@link CacheManager}.
+     * @param endpoint The Delivery API endpoint of the request
+     * @param hit Whether the response was served without an HTTP request
+     */
+    default void onCacheLookup(String endpoint, boolean hit) {
+    }
+}
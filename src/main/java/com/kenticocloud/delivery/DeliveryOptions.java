@@ -24,6 +24,8 @@
 
 package com.kenticocloud.delivery;
 
+import javax.net.ssl.SSLContext;
+
 /**
  * Keeps settings which are provided by customer or have default values,
  * used in {@link DeliveryClient}.
@@ -37,6 +39,32 @@ public class DeliveryOptions {
     String previewApiKey;
     boolean usePreviewApi = false;
     boolean waitForLoadingNewContent = false;
+    int maxRetryAttempts = 0;
+    long retryBaseDelayMillis = 100;
+    long retryMaxDelayMillis = 5000;
+    int circuitBreakerFailureThreshold = 0;
+    long circuitBreakerOpenMillis = 30000;
+    int maxConnections = 20;
+    int maxConnectionsPerRoute = 20;
+    int connectTimeoutMillis = 10000;
+    int socketTimeoutMillis = 30000;
+    int connectionRequestTimeoutMillis = 10000;
+    long keepAliveMillis = 30000;
+    long maxIdleMillis = 60000;
+    SSLContext sslContext = null;
+    int tlsSessionCacheSize = 0;
+    int tlsSessionTimeoutSeconds = 0;
+    boolean compressionEnabled = true;
+    boolean hedgingEnabled = false;
+    double hedgePercentile = 0.95;
+    long hedgeMinDelayMillis = 10;
+    double hedgeMaxFraction = 0.05;
+    boolean concurrencyLimitEnabled = false;
+    int initialConcurrencyLimit = 20;
+    int minConcurrencyLimit = 1;
+    int maxConcurrencyLimit = 200;
+    long concurrencyLimitLatencyMillis = 1000;
+    long concurrencyLimitMaxWaitMillis = 500;
 
     /**
      * Constructs an empty settings instance of {@link DeliveryOptions}.
@@ -183,4 +211,459 @@ public class DeliveryOptions {
     public void setWaitForLoadingNewContent(boolean waitForLoadingNewContent) {
         this.waitForLoadingNewContent = waitForLoadingNewContent;
     }
+
+    /**
+     * Gets the number of times a failed request is retried.
+     * @return The maximum number of retries per request.
+     */
+    public int getMaxRetryAttempts() {
+        return maxRetryAttempts;
+    }
+
+    /**
+     * Sets the number of times a request is retried after a connection failure, a server error, or a 429 Too Many
+     * Requests response.  Retries are delayed with capped exponential backoff and random jitter, or by the Retry-After
+     * header of the response if present.
+     * @param maxRetryAttempts The maximum number of retries per request.  Defaults to 0, which disables retrying.
+     */
+    public void setMaxRetryAttempts(int maxRetryAttempts) {
+        if (maxRetryAttempts < 0) {
+            throw new IllegalArgumentException("The number of retry attempts must not be negative.");
+        }
+        this.maxRetryAttempts = maxRetryAttempts;
+    }
+
+    /**
+     * Gets the base delay of the exponential backoff between retries.
+     * @return The base retry delay in milliseconds.
+     */
+    public long getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis;
+    }
+
+    /**
+     * Sets the base delay of the exponential backoff between retries.  The n-th retry waits a random time between
+     * zero and the base delay times 2^n, capped at the maximum retry delay.
+     * @param retryBaseDelayMillis The base retry delay in milliseconds.  Defaults to 100.
+     */
+    public void setRetryBaseDelayMillis(long retryBaseDelayMillis) {
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+    }
+
+    /**
+     * Gets the maximum delay between retries.
+     * @return The maximum retry delay in milliseconds.
+     */
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    /**
+     * Sets the maximum delay between retries.  A request whose Retry-After header asks for a longer delay is not
+     * retried.
+     * @param retryMaxDelayMillis The maximum retry delay in milliseconds.  Defaults to 5000.
+     */
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    /**
+     * Gets the number of consecutive failed requests which opens the circuit breaker.
+     * @return The circuit breaker failure threshold.
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed requests which opens the circuit breaker.  While the breaker is open,
+     * requests fail fast with a {@link CircuitBreakerOpenException}, which an {@link InMemoryCacheManager} configured
+     * to serve stale responses on error answers from the cache.
+     * @param circuitBreakerFailureThreshold The circuit breaker failure threshold.  Defaults to 0, which disables the
+     *                                       circuit breaker.
+     */
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Gets how long the circuit breaker stays open before letting a probe request through.
+     * @return The open duration in milliseconds.
+     */
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    /**
+     * Sets how long the circuit breaker stays open before letting a probe request through.
+     * @param circuitBreakerOpenMillis The open duration in milliseconds.  Defaults to 30000.
+     */
+    public void setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
+    /**
+     * Gets the maximum number of pooled HTTP connections.
+     * @return The maximum number of connections across all routes.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of pooled HTTP connections across all routes.  Applies to the synchronous and
+     * asynchronous connection pools separately.
+     * @param maxConnections The maximum number of connections.  Defaults to 20.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Gets the maximum number of pooled HTTP connections to a single host.
+     * @return The maximum number of connections per route.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of pooled HTTP connections to a single host.  As all requests go to the same Delivery
+     * API endpoint, this is usually equal to the maximum number of connections.
+     * @param maxConnectionsPerRoute The maximum number of connections per route.  Defaults to 20.
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Gets the timeout for establishing a connection.
+     * @return The connect timeout in milliseconds.
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Sets the timeout for establishing a connection.
+     * @param connectTimeoutMillis The connect timeout in milliseconds, 0 for no timeout.  Defaults to 10000.
+     */
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * Gets the maximum period of inactivity while waiting for response data.
+     * @return The socket timeout in milliseconds.
+     */
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Sets the maximum period of inactivity while waiting for response data, after which the request fails.
+     * @param socketTimeoutMillis The socket timeout in milliseconds, 0 for no timeout.  Defaults to 30000.
+     */
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    /**
+     * Gets the timeout for leasing a connection from the pool.
+     * @return The connection request timeout in milliseconds.
+     */
+    public int getConnectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a request waits for a free pooled connection when all connections are in use.
+     * @param connectionRequestTimeoutMillis The connection request timeout in milliseconds, 0 for no timeout.
+     *                                       Defaults to 10000.
+     */
+    public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+    }
+
+    /**
+     * Gets the maximum time an idle connection is kept alive for reuse.
+     * @return The keep-alive duration in milliseconds.
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Sets the maximum time an idle connection is kept alive for reuse.  A shorter timeout sent by the server in the
+     * Keep-Alive header takes precedence.
+     * @param keepAliveMillis The keep-alive duration in milliseconds, or a negative value to keep connections alive as
+     *                        long as the server allows.  Defaults to 30000.
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Gets the idle time after which pooled connections are closed in the background.
+     * @return The maximum idle time in milliseconds.
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    /**
+     * Sets the idle time after which pooled connections are closed by a background thread, which also closes expired
+     * connections.  This avoids reusing connections the server or a proxy has already dropped.
+     * @param maxIdleMillis The maximum idle time in milliseconds, 0 to disable idle connection eviction.  Defaults to
+     *                      60000.
+     */
+    public void setMaxIdleMillis(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * Gets the SSL context used for HTTPS connections.
+     * @return The SSL context, or null if a default one is created.
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Sets the SSL context used for HTTPS connections.  All connections of a client share the context and therefore
+     * its TLS session cache, so new connections can resume an existing session instead of a full handshake.
+     * @param sslContext The SSL context, or null to create a default one per client.  Defaults to null.
+     */
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Gets the number of TLS sessions cached for resumption.
+     * @return The TLS session cache size.
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * Sets the number of TLS sessions cached for resumption by the SSL context.
+     * @param tlsSessionCacheSize The TLS session cache size, 0 to keep the JSSE default.  Defaults to 0.
+     */
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    /**
+     * Gets how long cached TLS sessions can be resumed.
+     * @return The TLS session timeout in seconds.
+     */
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * Sets how long cached TLS sessions can be resumed.
+     * @param tlsSessionTimeoutSeconds The TLS session timeout in seconds, 0 to keep the JSSE default.  Defaults to 0.
+     */
+    public void setTlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * Gets whether compressed responses are requested.
+     * @return Whether response compression is enabled.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Sets whether gzip or deflate compressed responses are requested from the Delivery API.  Compressed responses
+     * are decompressed while they are being parsed, without buffering them.
+     * @param compressionEnabled Whether response compression is enabled.  Defaults to true.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Gets whether slow requests are hedged.
+     * @return Whether hedging is enabled.
+     */
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    /**
+     * Sets whether slow requests are hedged: when a request takes longer than most recent requests, an identical
+     * request is sent, the first response to arrive is used and the other request is cancelled.  Hedging relies on
+     * the non-blocking {@link HttpTransport#executeAsync} of the transport, also for the synchronous retrieval
+     * methods.
+     * @param hedgingEnabled Whether hedging is enabled.  Defaults to false.
+     * @see #setHedgePercentile(double)
+     * @see #setHedgeMaxFraction(double)
+     */
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+    }
+
+    /**
+     * Gets the latency percentile after which a request is hedged.
+     * @return The hedge percentile.
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Sets the percentile of recent request latencies after which a request is hedged.
+     * @param hedgePercentile The hedge percentile, between 0 and 1.  Defaults to 0.95.
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile <= 0 || hedgePercentile > 1) {
+            throw new IllegalArgumentException("The hedge percentile must be greater than 0 and at most 1.");
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Gets the minimum delay before a request is hedged.
+     * @return The minimum hedge delay in milliseconds.
+     */
+    public long getHedgeMinDelayMillis() {
+        return hedgeMinDelayMillis;
+    }
+
+    /**
+     * Sets the minimum delay before a request is hedged, regardless of recent latencies.
+     * @param hedgeMinDelayMillis The minimum hedge delay in milliseconds.  Defaults to 10.
+     */
+    public void setHedgeMinDelayMillis(long hedgeMinDelayMillis) {
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+    }
+
+    /**
+     * Gets the maximum fraction of requests which are hedged.
+     * @return The hedge budget.
+     */
+    public double getHedgeMaxFraction() {
+        return hedgeMaxFraction;
+    }
+
+    /**
+     * Sets the maximum fraction of requests which are hedged, so hedging never adds more than this share of traffic.
+     * @param hedgeMaxFraction The hedge budget, between 0 and 1.  Defaults to 0.05.
+     */
+    public void setHedgeMaxFraction(double hedgeMaxFraction) {
+        if (hedgeMaxFraction < 0 || hedgeMaxFraction > 1) {
+            throw new IllegalArgumentException("The hedge budget must be between 0 and 1.");
+        }
+        this.hedgeMaxFraction = hedgeMaxFraction;
+    }
+
+    /**
+     * Gets whether the number of requests in flight is adaptively limited.
+     * @return Whether the concurrency limit is enabled.
+     */
+    public boolean isConcurrencyLimitEnabled() {
+        return concurrencyLimitEnabled;
+    }
+
+    /**
+     * Sets whether the number of requests in flight is adaptively limited.  The limit grows while requests complete
+     * within the latency threshold and shrinks when they fail, are throttled or slow down, so an overloaded Delivery
+     * API sees less traffic instead of a growing queue.  Requests over the limit wait for the maximum wait, and then
+     * fail with a {@link ConcurrencyLimitExceededException}.
+     * @param concurrencyLimitEnabled Whether the concurrency limit is enabled.  Defaults to false.
+     */
+    public void setConcurrencyLimitEnabled(boolean concurrencyLimitEnabled) {
+        this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+    }
+
+    /**
+     * Gets the concurrency limit a client starts with.
+     * @return The initial concurrency limit.
+     */
+    public int getInitialConcurrencyLimit() {
+        return initialConcurrencyLimit;
+    }
+
+    /**
+     * Sets the concurrency limit a client starts with.  Read when the client is constructed.
+     * @param initialConcurrencyLimit The initial concurrency limit.  Defaults to 20.
+     */
+    public void setInitialConcurrencyLimit(int initialConcurrencyLimit) {
+        if (initialConcurrencyLimit < 1) {
+            throw new IllegalArgumentException("The concurrency limit must be at least 1.");
+        }
+        this.initialConcurrencyLimit = initialConcurrencyLimit;
+    }
+
+    /**
+     * Gets the lowest value the concurrency limit can shrink to.
+     * @return The minimum concurrency limit.
+     */
+    public int getMinConcurrencyLimit() {
+        return minConcurrencyLimit;
+    }
+
+    /**
+     * Sets the lowest value the concurrency limit can shrink to.
+     * @param minConcurrencyLimit The minimum concurrency limit.  Defaults to 1.
+     */
+    public void setMinConcurrencyLimit(int minConcurrencyLimit) {
+        if (minConcurrencyLimit < 1) {
+            throw new IllegalArgumentException("The concurrency limit must be at least 1.");
+        }
+        this.minConcurrencyLimit = minConcurrencyLimit;
+    }
+
+    /**
+     * Gets the highest value the concurrency limit can grow to.
+     * @return The maximum concurrency limit.
+     */
+    public int getMaxConcurrencyLimit() {
+        return maxConcurrencyLimit;
+    }
+
+    /**
+     * Sets the highest value the concurrency limit can grow to.
+     * @param maxConcurrencyLimit The maximum concurrency limit.  Defaults to 200.
+     */
+    public void setMaxConcurrencyLimit(int maxConcurrencyLimit) {
+        this.maxConcurrencyLimit = maxConcurrencyLimit;
+    }
+
+    /**
+     * Gets the latency above which a request counts as a sign of overload.
+     * @return The latency threshold in milliseconds.
+     */
+    public long getConcurrencyLimitLatencyMillis() {
+        return concurrencyLimitLatencyMillis;
+    }
+
+    /**
+     * Sets the latency above which a request counts as a sign of overload, and shrinks the concurrency limit.
+     * @param concurrencyLimitLatencyMillis The latency threshold in milliseconds.  Defaults to 1000.
+     */
+    public void setConcurrencyLimitLatencyMillis(long concurrencyLimitLatencyMillis) {
+        this.concurrencyLimitLatencyMillis = concurrencyLimitLatencyMillis;
+    }
+
+    /**
+     * Gets how long a request over the concurrency limit waits for a permit.
+     * @return The maximum wait in milliseconds.
+     */
+    public long getConcurrencyLimitMaxWaitMillis() {
+        return concurrencyLimitMaxWaitMillis;
+    }
+
+    /**
+     * Sets how long a request over the concurrency limit waits for a permit before it is rejected.
+     * @param concurrencyLimitMaxWaitMillis The maximum wait in milliseconds.  Defaults to 500.
+     */
+    public void setConcurrencyLimitMaxWaitMillis(long concurrencyLimitMaxWaitMillis) {
+        this.concurrencyLimitMaxWaitMillis = concurrencyLimitMaxWaitMillis;
+    }
 }
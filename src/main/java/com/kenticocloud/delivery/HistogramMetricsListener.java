@@ -0,0 +1,284 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link DeliveryMetricsListener} recording a latency histogram per endpoint and phase, and cache hit and miss
+ * counts per endpoint.
+ * <p>
+ * Recording is lock-free and allocation-free once an endpoint has been seen: each latency increments one counter of a
+ * log-linear histogram, with four sub-buckets per power of two, which bounds the error of reported percentiles to
+ * 25%.
+ * <pre>
+ * HistogramMetricsListener metrics = new HistogramMetricsListener();
+ * client.setMetricsListener(metrics);
+ * ...
+ * long p99 = metrics.getHistogram("items", HistogramMetricsListener.Phase.TIME_TO_FIRST_BYTE).getPercentile(0.99);
+ * </pre>
+ */
+public class HistogramMetricsListener implements DeliveryMetricsListener {
+
+    /**
+     * The phases of a request timed by the listener.
+     */
+    public enum Phase {
+        CONNECTION_LEASE,
+        TIME_TO_FIRST_BYTE,
+        BODY_READ,
+        JSON_PARSE,
+        TREE_TO_VALUE,
+        RICH_TEXT,
+        CAST_TO
+    }
+
+    private final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onConnectionLeased(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.CONNECTION_LEASE.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onResponseReceived(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.TIME_TO_FIRST_BYTE.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onBodyRead(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.BODY_READ.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onJsonParsed(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.JSON_PARSE.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onTreeBound(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.TREE_TO_VALUE.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onRichTextProcessed(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.RICH_TEXT.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onCastTo(String endpoint, long nanos) {
+        getEndpointMetrics(endpoint).histograms[Phase.CAST_TO.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onCacheLookup(String endpoint, boolean hit) {
+        EndpointMetrics endpointMetrics = getEndpointMetrics(endpoint);
+        if (hit) {
+            endpointMetrics.cacheHits.increment();
+        } else {
+            endpointMetrics.cacheMisses.increment();
+        }
+    }
+
+    /**
+     * Gets the endpoints metrics have been recorded for.
+     * @return The names of the endpoints
+     */
+    public Set<String> getEndpoints() {
+        return Collections.unmodifiableSet(endpoints.keySet());
+    }
+
+    /**
+     * Gets the latency histogram of a phase of requests to an endpoint.
+     * @param endpoint The Delivery API endpoint, such as {@code items}
+     * @param phase The phase of the requests
+     * @return The histogram, empty if nothing was recorded
+     */
+    public Histogram getHistogram(String endpoint, Phase phase) {
+        return getEndpointMetrics(endpoint).histograms[phase.ordinal()];
+    }
+
+    /**
+     * Gets the number of requests to an endpoint served by the cache.
+     * @param endpoint The Delivery API endpoint, such as {@code items}
+     * @return The number of cache hits
+     */
+    public long getCacheHitCount(String endpoint) {
+        return getEndpointMetrics(endpoint).cacheHits.sum();
+    }
+
+    /**
+     * Gets the number of requests to an endpoint which missed the cache.
+     * @param endpoint The Delivery API endpoint, such as {@code items}
+     * @return The number of cache misses
+     */
+    public long getCacheMissCount(String endpoint) {
+        return getEndpointMetrics(endpoint).cacheMisses.sum();
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private EndpointMetrics getEndpointMetrics(String endpoint) {
+        EndpointMetrics endpointMetrics = endpoints.get(endpoint);
+        if (endpointMetrics == null) {
+            endpointMetrics = endpoints.computeIfAbsent(endpoint, key -> new EndpointMetrics());
+        }
+        return endpointMetrics;
+    }
+
+    private static class EndpointMetrics {
+
+        final Histogram[] histograms = new Histogram[Phase.values().length];
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder cacheMisses = new LongAdder();
+
+        EndpointMetrics() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * A lock-free log-linear histogram of latencies in nanoseconds.
+     */
+    public static class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+            //Created by HistogramMetricsListener
+        }
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(indexOf(value));
+            count.increment();
+            total.add(value);
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        /**
+         * Gets the number of recorded latencies.
+         * @return the count
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Gets the mean of the recorded latencies.
+         * @return the mean in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : total.sum() / n;
+        }
+
+        /**
+         * Gets the highest recorded latency.
+         * @return the maximum in nanoseconds
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Gets an upper bound of a percentile of the recorded latencies.
+         * @param percentile The percentile, between 0 and 1
+         * @return the percentile in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            long[] snapshot = new long[BUCKET_COUNT];
+            long n = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snapshot[i] = buckets.get(i);
+                n += snapshot[i];
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%dus, p50=%dus, p99=%dus, max=%dus",
+                    getCount(),
+                    TimeUnit.NANOSECONDS.toMicros(getMean()),
+                    TimeUnit.NANOSECONDS.toMicros(getPercentile(0.5)),
+                    TimeUnit.NANOSECONDS.toMicros(getPercentile(0.99)),
+                    TimeUnit.NANOSECONDS.toMicros(getMax()));
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = index % SUB_BUCKETS;
+            long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+            return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
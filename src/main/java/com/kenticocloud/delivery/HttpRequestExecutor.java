@@ -27,8 +27,95 @@ package com.kenticocloud.delivery;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public interface HttpRequestExecutor {
 
     JsonNode execute() throws IOException;
+
+    /**
+     * Retrieves the response without blocking the calling thread.  The default implementation runs
+     * {@link #execute()} on the calling thread.
+     * @return A future completed with the response, or completed exceptionally if the request failed
+     */
+    default CompletableFuture<JsonNode> executeAsync() {
+        CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        try {
+            future.complete(execute());
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Retrieves the response along with its caching metadata.  When a previous response with validators is passed in,
+     * the request is made conditional on them, and a 304 Not Modified answer is returned as the previous response
+     * refreshed with the new metadata, without downloading or parsing the body again.  Caches which keep the body
+     * elsewhere may pass a previous response holding only validators, so implementations must not read its body.
+     * <p>
+     * The default implementation runs {@link #execute()} and returns a response without caching metadata.
+     * @param previous The expired response to revalidate, or null for an unconditional request
+     * @return The new response, or the revalidated previous response
+     * @throws IOException Thrown if the request fails
+     * @see CachedResponse#isNotModified()
+     */
+    default CachedResponse executeConditionally(CachedResponse previous) throws IOException {
+        return new CachedResponse(execute());
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #executeConditionally(CachedResponse)}.  The default implementation maps the
+     * result of {@link #executeAsync()}.
+     * @param previous The expired response to revalidate, or null for an unconditional request
+     * @return A future completed with the new response, or the revalidated previous response
+     */
+    default CompletableFuture<CachedResponse> executeConditionallyAsync(CachedResponse previous) {
+        return executeAsync().thenApply(CachedResponse::new);
+    }
+
+    /**
+     * Retrieves the response like {@link #executeConditionally(CachedResponse)}, but leaves the body as the raw bytes
+     * received, for caches which do not keep parsed trees.  A 304 Not Modified answer is returned as the previous
+     * response refreshed with the new metadata, in whatever form the previous response was.
+     * <p>
+     * The default implementation compacts the result of {@link #executeConditionally(CachedResponse)}.
+     * @param previous The expired response to revalidate, or null for an unconditional request
+     * @return The new response, holding its body as bytes, or the revalidated previous response
+     * @throws IOException Thrown if the request fails
+     * @see CachedResponse#isCompact()
+     */
+    default CachedResponse executeConditionallyUnparsed(CachedResponse previous) throws IOException {
+        CachedResponse response = executeConditionally(previous);
+        return response.isNotModified() ? response : response.compact(false);
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #executeConditionallyUnparsed(CachedResponse)}.  The default implementation
+     * compacts the result of {@link #executeConditionallyAsync(CachedResponse)}.
+     * @param previous The expired response to revalidate, or null for an unconditional request
+     * @return A future completed with the new response, or the revalidated previous response
+     */
+    default CompletableFuture<CachedResponse> executeConditionallyUnparsedAsync(CachedResponse previous) {
+        return executeConditionallyAsync(previous).thenApply(response -> {
+            try {
+                return response.isNotModified() ? response : response.compact(false);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns an executor for the same request which is not tied to the request being resolved, for caches to refresh
+     * a stale response in the background with.  Requests it makes are not reported as cache misses of the request
+     * which triggered the refresh.
+     * <p>
+     * The default implementation returns this executor.
+     * @return The executor to refresh the response with
+     */
+    default HttpRequestExecutor detached() {
+        return this;
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the requests built by {@link DeliveryClient} and returns the raw responses.
+ * <p>
+ * The transport sits below retries, caching and deserialization, so implementations only deal with the HTTP exchange
+ * itself.  The default transport is {@link ApacheHttpTransport}; {@link InMemoryHttpTransport} serves canned responses
+ * without any sockets, for tests and benchmarks.  Implementations must be thread safe.
+ * <pre>
+ * client.setHttpTransport(new InMemoryHttpTransport());
+ * </pre>
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Sends the request and waits for the response.  The caller consumes and closes the entity of the response, and
+     * decodes it according to its Content-Encoding header, so transports should not decompress it themselves.
+     * @param request The request to send
+     * @return The response, with the status and entity as returned by the server
+     * @throws IOException Thrown if the request could not be sent or the response could not be received
+     */
+    HttpResponse execute(HttpUriRequest request) throws IOException;
+
+    /**
+     * Sends the request without blocking the calling thread.  The default implementation calls
+     * {@link #execute(HttpUriRequest)} on the calling thread, override it if the transport supports non-blocking I/O.
+     * @param request The request to send
+     * @return A future completing with the response, or exceptionally with an {@link IOException}
+     */
+    default CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(execute(request));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,887 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, in-memory {@link CacheManager} keyed on the request URI.
+ * <p>
+ * The cache is bounded by the estimated heap footprint of the cached {@link JsonNode} trees rather than by the number
+ * of entries, and every entry expires after a time to live.  Eviction follows the W-TinyLFU policy: new entries land in
+ * a small LRU admission window, and only make it into the main segmented LRU region if they have been requested more
+ * often than the entry they would displace, according to a compact frequency sketch.  This keeps one-off requests
+ * from flushing popular responses out of the cache.
+ * <p>
+ * Reads never take a lock.  Accesses are recorded in a lossy buffer and applied to the eviction policy in batches.
+ * <p>
+ * A {@code max-age} or {@code no-cache} directive in the {@code Cache-Control} header of a response overrides the
+ * configured time to live, and {@code no-store} responses are not cached.  Expired responses carrying an {@code ETag}
+ * or {@code Last-Modified} validator are kept, and revalidated with a conditional request; a 304 Not Modified answer
+ * renews the cached response without downloading or parsing it again.
+ * <p>
+ * Optionally, expired responses can keep being served for a while after they expire: with
+ * {@link #setStaleWhileRevalidate(long, TimeUnit)} the stale response is returned at once while a background thread
+ * refreshes it, and with {@link #setStaleIfError(long, TimeUnit)} it is returned when refreshing it fails with an
+ * {@link IOException}.  Past these ceilings requests wait for the Delivery API as usual.
+ * <p>
+ * By default responses are cached as parsed trees, which take several times the size of the JSON in heap.  With
+ * {@link #setEntryFormat(EntryFormat)} they can be cached as the raw, optionally compressed, JSON bytes instead, so
+ * many more responses fit within the same maximum weight; the {@link DeliveryClient} then binds a hit straight from
+ * the bytes to the requested type.
+ * <pre>
+ * InMemoryCacheManager cacheManager = new InMemoryCacheManager(64 * 1024 * 1024, 5, TimeUnit.MINUTES);
+ * cacheManager.setStaleWhileRevalidate(1, TimeUnit.MINUTES);
+ * cacheManager.setStaleIfError(1, TimeUnit.HOURS);
+ * client.setCacheManager(cacheManager);
+ * </pre>
+ */
+public class InMemoryCacheManager implements CacheManager {
+
+    static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+    static final long DEFAULT_TIME_TO_LIVE_SECONDS = 60;
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryCacheManager.class);
+
+    //The byte array and CachedResponse headers of a compact entry
+    private static final long COMPACT_ENTRY_OVERHEAD = 64;
+
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 64;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private static final double WINDOW_PERCENTAGE = 0.01d;
+    private static final double PROTECTED_PERCENTAGE = 0.8d;
+
+    private static final int DETACHED = -1;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final long timeToLiveNanos;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final NodeDeque window = new NodeDeque();
+    private final NodeDeque probation = new NodeDeque();
+    private final NodeDeque protectedDeque = new NodeDeque();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private long weightedSize;
+
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readCount = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder revalidationCount = new LongAdder();
+    private final LongAdder staleHitCount = new LongAdder();
+
+    private volatile EntryFormat entryFormat = EntryFormat.TREE;
+    private volatile long staleWhileRevalidateNanos;
+    private volatile long staleIfErrorNanos;
+    private volatile Executor refreshExecutor;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a cache holding up to 64 MB of responses for 60 seconds each.
+     */
+    public InMemoryCacheManager() {
+        this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a cache with the given bounds.
+     * @param maximumWeight The maximum estimated heap footprint of all cached responses, in bytes
+     * @param timeToLive How long a response is served from the cache after it was retrieved
+     * @param unit The unit of the timeToLive argument
+     */
+    public InMemoryCacheManager(long maximumWeight, long timeToLive, TimeUnit unit) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight must be positive.");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("The time to live must not be negative.");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_PERCENTAGE));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_PERCENTAGE);
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    @Override
+    public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+        return resolveResponse(requestUri, executor).getBody();
+    }
+
+    @Override
+    public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+        return resolveResponseAsync(requestUri, executor).thenApply(CachedResponse::getBody);
+    }
+
+    @Override
+    public CachedResponse resolveResponse(String requestUri, HttpRequestExecutor executor) throws IOException {
+        Node node = data.get(requestUri);
+        if (isServable(requestUri, node, executor)) {
+            return hit(node);
+        }
+        missCount.increment();
+        CachedResponse response;
+        try {
+            response = retrieve(executor, getRevalidationCandidate(node));
+        } catch (IOException e) {
+            if (isServableOnError(node)) {
+                logger.warn("Serving stale response for {} after error: {}", requestUri, e.getMessage());
+                staleHitCount.increment();
+                return hit(node);
+            }
+            throw e;
+        }
+        try {
+            return store(requestUri, response, node);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public CompletableFuture<CachedResponse> resolveResponseAsync(String requestUri, HttpRequestExecutor executor) {
+        Node node = data.get(requestUri);
+        if (isServable(requestUri, node, executor)) {
+            return CompletableFuture.completedFuture(hit(node));
+        }
+        missCount.increment();
+        CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+        retrieveAsync(executor, getRevalidationCandidate(node)).whenComplete((response, e) -> {
+            if (e == null) {
+                try {
+                    future.complete(store(requestUri, response, node));
+                } catch (UncheckedIOException storeException) {
+                    future.completeExceptionally(storeException.getCause());
+                } catch (RuntimeException storeException) {
+                    future.completeExceptionally(storeException);
+                }
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException && isServableOnError(node)) {
+                logger.warn("Serving stale response for {} after error: {}", requestUri, cause.getMessage());
+                staleHitCount.increment();
+                future.complete(hit(node));
+            } else {
+                future.completeExceptionally(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Serves expired responses for up to the given duration past their expiry, while refreshing them in the
+     * background.  Only one refresh runs per request URI at a time.  Defaults to zero, which disables serving stale
+     * responses.
+     * @param duration The maximum staleness of a response served while it is being refreshed
+     * @param unit The unit of the duration argument
+     */
+    public void setStaleWhileRevalidate(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The stale-while-revalidate duration must not be negative.");
+        }
+        this.staleWhileRevalidateNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Serves expired responses for up to the given duration past their expiry when retrieving a fresh response fails
+     * with an {@link IOException}, such as a connection failure or a server error.  Client errors reported by the
+     * Delivery API are never masked.  Defaults to zero.
+     * @param duration The maximum staleness of a response served in place of an error
+     * @param unit The unit of the duration argument
+     */
+    public void setStaleIfError(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The stale-if-error duration must not be negative.");
+        }
+        this.staleIfErrorNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Sets the executor which refreshes stale responses in the background.  By default, a pool of two daemon threads
+     * with a bounded queue is used, and refreshes which do not fit in the queue are skipped until the next request.
+     * @param refreshExecutor The executor to refresh stale responses with, or null to use the default
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Sets the form new responses are cached in.  Defaults to {@link EntryFormat#TREE}.
+     * @param entryFormat The form to cache responses in
+     */
+    public void setEntryFormat(EntryFormat entryFormat) {
+        if (entryFormat == null) {
+            throw new IllegalArgumentException("The entry format is not specified.");
+        }
+        this.entryFormat = entryFormat;
+    }
+
+    /**
+     * Returns the cached response for the request URI, or null if there is none or it has expired.  Records a hit or
+     * a miss.
+     * @param requestUri The URI of the request
+     * @return The cached response, or null
+     */
+    public JsonNode getIfPresent(String requestUri) {
+        Node node = data.get(requestUri);
+        if (!isFresh(node)) {
+            missCount.increment();
+            return null;
+        }
+        return hit(node).getBody();
+    }
+
+    /**
+     * Caches a response for the request URI, replacing any existing entry.  Responses whose estimated weight exceeds
+     * the maximum weight of the cache are not cached.
+     * @param requestUri The URI of the request
+     * @param response The response to cache
+     */
+    public void put(String requestUri, JsonNode response) {
+        put(requestUri, new CachedResponse(response));
+    }
+
+    /**
+     * Caches a response for the request URI along with its caching metadata, replacing any existing entry.  Responses
+     * marked no-store, or whose estimated weight exceeds the maximum weight of the cache, are not cached.  The
+     * response is converted to the configured {@link EntryFormat} first.
+     * @param requestUri The URI of the request
+     * @param response The response to cache
+     * @throws UncheckedIOException Thrown if the response cannot be converted
+     */
+    public void put(String requestUri, CachedResponse response) {
+        insert(requestUri, response);
+    }
+
+    private CachedResponse insert(String requestUri, CachedResponse response) {
+        if (response.isNoStore()) {
+            invalidate(requestUri);
+            return response;
+        }
+        CachedResponse formatted = format(response);
+        long weight = formatted.isCompact()
+                ? stringWeight(requestUri) + COMPACT_ENTRY_OVERHEAD + formatted.getCompactSize()
+                : estimateWeight(requestUri, formatted.getBody());
+        insert(requestUri, formatted, weight);
+        return formatted;
+    }
+
+    private CachedResponse format(CachedResponse response) {
+        try {
+            switch (entryFormat) {
+                case BYTES:
+                    return response.compact(false);
+                case COMPRESSED_BYTES:
+                    return response.compact(true);
+                default:
+                    return response.parsed();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void insert(String requestUri, CachedResponse response, long weight) {
+        long now = java.lang.System.nanoTime();
+        Node node = new Node(requestUri, response, weight, now + expireAfterCreate(requestUri, response));
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            sketch.ensureCapacity(data.size() + 1);
+            sketch.increment(requestUri);
+            Node existing = data.get(requestUri);
+            if (existing != null) {
+                retire(existing);
+            }
+            if (weight > maximumWeight) {
+                return;
+            }
+            data.put(requestUri, node);
+            node.queue = WINDOW;
+            window.addFirst(node);
+            weightedSize += weight;
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the cached response for the request URI, if any.
+     * @param requestUri The URI of the request
+     */
+    public void invalidate(String requestUri) {
+        evictionLock.lock();
+        try {
+            Node node = data.get(requestUri);
+            if (node != null) {
+                retire(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Discards all cached responses.
+     */
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            for (Node node : data.values()) {
+                retire(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of requests which were not cached, or whose cached response had expired.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of responses evicted to stay within the maximum weight.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Gets the number of expired responses renewed by a 304 Not Modified answer to a conditional request.
+     * @return the number of revalidations
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.sum();
+    }
+
+    /**
+     * Gets the number of expired responses served while being refreshed, or in place of an error.  These are also
+     * counted as hits.
+     * @return the number of stale hits
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.sum();
+    }
+
+    /**
+     * Gets the number of cached responses, including expired responses not yet discarded.
+     * @return the number of entries
+     */
+    public long getSize() {
+        return data.size();
+    }
+
+    /**
+     * Gets the estimated heap footprint of all cached responses, in bytes.
+     * @return the weighted size of the cache
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum estimated heap footprint of all cached responses, in bytes.
+     * @return the maximum weight of the cache
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Determines how long a newly retrieved or revalidated response is served from the cache.  Returns the max-age
+     * stated by the server if present, or the time to live configured on construction otherwise.  Override to vary it
+     * per request.
+     * @param requestUri The URI of the request
+     * @param response The retrieved response
+     * @return The time to live of the entry, in nanoseconds
+     */
+    protected long expireAfterCreate(String requestUri, CachedResponse response) {
+        if (response.getMaxAge() >= 0) {
+            return TimeUnit.SECONDS.toNanos(response.getMaxAge());
+        }
+        return timeToLiveNanos;
+    }
+
+    private static boolean isFresh(Node node) {
+        return node != null && !node.isExpired(java.lang.System.nanoTime());
+    }
+
+    private boolean isServable(String requestUri, Node node, HttpRequestExecutor executor) {
+        if (node == null) {
+            return false;
+        }
+        long now = java.lang.System.nanoTime();
+        if (!node.isExpired(now)) {
+            return true;
+        }
+        if (node.expiresAt + staleWhileRevalidateNanos - now <= 0) {
+            return false;
+        }
+        staleHitCount.increment();
+        refresh(requestUri, node, executor);
+        return true;
+    }
+
+    private boolean isServableOnError(Node node) {
+        return node != null && node.expiresAt + staleIfErrorNanos - java.lang.System.nanoTime() > 0;
+    }
+
+    private void refresh(String requestUri, Node node, HttpRequestExecutor executor) {
+        if (!refreshing.add(requestUri)) {
+            return;
+        }
+        //The triggering request was served from the cache, the refresh must not count as its miss
+        HttpRequestExecutor detachedExecutor = executor.detached();
+        Runnable refresh = () -> {
+            try {
+                store(requestUri, retrieve(detachedExecutor, getRevalidationCandidate(node)), node);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to refresh stale response for {}: {}", requestUri, e.getMessage());
+            } finally {
+                refreshing.remove(requestUri);
+            }
+        };
+        try {
+            getRefreshExecutor().execute(refresh);
+        } catch (RuntimeException e) {
+            refreshing.remove(requestUri);
+            logger.debug("Skipped refreshing stale response for {}: {}", requestUri, e.getMessage());
+        }
+    }
+
+    private Executor getRefreshExecutor() {
+        Executor executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                            REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "kentico-cache-refresh-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    pool.allowCoreThreadTimeOut(true);
+                    refreshExecutor = executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private CachedResponse hit(Node node) {
+        hitCount.increment();
+        afterRead(node);
+        return node.response;
+    }
+
+    //Skips parsing responses which are cached as bytes anyway
+    private CachedResponse retrieve(HttpRequestExecutor executor, CachedResponse previous) throws IOException {
+        return entryFormat == EntryFormat.TREE
+                ? executor.executeConditionally(previous)
+                : executor.executeConditionallyUnparsed(previous);
+    }
+
+    private CompletableFuture<CachedResponse> retrieveAsync(HttpRequestExecutor executor, CachedResponse previous) {
+        return entryFormat == EntryFormat.TREE
+                ? executor.executeConditionallyAsync(previous)
+                : executor.executeConditionallyUnparsedAsync(previous);
+    }
+
+    private static CachedResponse getRevalidationCandidate(Node node) {
+        return node != null && node.response.hasValidators() ? node.response : null;
+    }
+
+    private CachedResponse store(String requestUri, CachedResponse response, Node previous) {
+        if (response.isNotModified() && previous != null && !response.isNoStore()) {
+            revalidationCount.increment();
+            //Revalidated from the cached entry, so already in its format
+            insert(requestUri, response, previous.weight);
+            return response;
+        }
+        return insert(requestUri, response);
+    }
+
+    private void afterRead(Node node) {
+        long count = readCount.getAndIncrement();
+        readBuffer.lazySet((int) (count & READ_BUFFER_MASK), node);
+        if ((count % READ_BUFFER_DRAIN_THRESHOLD) == 0 && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    //Guarded by the eviction lock
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+    }
+
+    //Guarded by the eviction lock
+    private void onAccess(Node node) {
+        if (node.retired) {
+            return;
+        }
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToFront(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedDeque.addFirst(node);
+            while (protectedDeque.weight > protectedMaximum && protectedDeque.peekLast() != node) {
+                Node demoted = protectedDeque.peekLast();
+                protectedDeque.remove(demoted);
+                demoted.queue = PROBATION;
+                probation.addFirst(demoted);
+            }
+        } else {
+            protectedDeque.moveToFront(node);
+        }
+    }
+
+    //Guarded by the eviction lock
+    private void evict() {
+        //Entries overflowing the admission window compete with the LRU entry of the main region
+        while (window.weight > windowMaximum && window.peekLast() != null) {
+            Node candidate = window.peekLast();
+            window.remove(candidate);
+            Node victim = probation.peekLast() != null ? probation.peekLast() : protectedDeque.peekLast();
+            if (weightedSize > maximumWeight && victim != null && !admit(candidate, victim)) {
+                candidate.queue = DETACHED;
+                evictNode(candidate);
+                continue;
+            }
+            candidate.queue = PROBATION;
+            probation.addFirst(candidate);
+            if (weightedSize > maximumWeight && victim != null) {
+                evictNode(victim);
+            }
+        }
+        while (weightedSize > maximumWeight) {
+            Node victim = probation.peekLast();
+            if (victim == null) {
+                victim = protectedDeque.peekLast();
+            }
+            if (victim == null) {
+                victim = window.peekLast();
+            }
+            if (victim == null) {
+                break;
+            }
+            evictNode(victim);
+        }
+    }
+
+    private boolean admit(Node candidate, Node victim) {
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key);
+    }
+
+    private void evictNode(Node node) {
+        retire(node);
+        evictionCount.increment();
+    }
+
+    //Guarded by the eviction lock
+    private void retire(Node node) {
+        if (node.retired) {
+            return;
+        }
+        node.retired = true;
+        data.remove(node.key, node);
+        if (node.queue == WINDOW) {
+            window.remove(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else if (node.queue == PROTECTED) {
+            protectedDeque.remove(node);
+        }
+        weightedSize -= node.weight;
+    }
+
+    /**
+     * Estimates the heap footprint of a cached response, including its key.
+     * @param requestUri The URI the response is cached under
+     * @param response The response tree
+     * @return The estimated footprint, in bytes
+     */
+    static long estimateWeight(String requestUri, JsonNode response) {
+        //Rough 64-bit compressed-oops sizes of the node classes and their backing collections
+        long weight = stringWeight(requestUri);
+        Deque<JsonNode> stack = new ArrayDeque<>();
+        stack.push(response);
+        while (!stack.isEmpty()) {
+            JsonNode node = stack.pop();
+            switch (node.getNodeType()) {
+                case OBJECT:
+                    weight += 72;
+                    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        weight += 48 + stringWeight(field.getKey());
+                        stack.push(field.getValue());
+                    }
+                    break;
+                case ARRAY:
+                    weight += 56 + 8L * node.size();
+                    for (JsonNode element : node) {
+                        stack.push(element);
+                    }
+                    break;
+                case STRING:
+                    weight += 16 + stringWeight(node.textValue());
+                    break;
+                case BOOLEAN:
+                case NULL:
+                case MISSING:
+                    //Shared singletons
+                    break;
+                default:
+                    weight += 24;
+                    break;
+            }
+        }
+        return weight;
+    }
+
+    private static long stringWeight(String s) {
+        return 40 + 2L * s.length();
+    }
+
+    /**
+     * The form responses are cached in by an {@link InMemoryCacheManager}.
+     */
+    public enum EntryFormat {
+        /**
+         * Parsed {@link JsonNode} trees, shared by all hits.  Fastest to serve, but several times the size of the JSON
+         * in heap.
+         */
+        TREE,
+        /**
+         * The raw UTF-8 JSON bytes, parsed on every hit.
+         */
+        BYTES,
+        /**
+         * The raw UTF-8 JSON bytes compressed with DEFLATE, decompressed and parsed on every hit.  Smallest in heap.
+         */
+        COMPRESSED_BYTES
+    }
+
+    private static final class Node {
+        final String key;
+        final CachedResponse response;
+        final long weight;
+        final long expiresAt;
+
+        //Guarded by the eviction lock
+        int queue;
+        boolean retired;
+        Node previous;
+        Node next;
+
+        Node(String key, CachedResponse response, long weight, long expiresAt) {
+            this.key = key;
+            this.response = response;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt - now <= 0;
+        }
+    }
+
+    //An intrusive doubly linked list in access order, most recent first
+    private static final class NodeDeque {
+        Node first;
+        Node last;
+        long weight;
+
+        void addFirst(Node node) {
+            node.previous = null;
+            node.next = first;
+            if (first == null) {
+                last = node;
+            } else {
+                first.previous = node;
+            }
+            first = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToFront(Node node) {
+            if (first != node) {
+                remove(node);
+                addFirst(node);
+            }
+        }
+
+        Node peekLast() {
+            return last;
+        }
+    }
+
+    //A count-min sketch of 4-bit counters which are periodically halved, so the popularity estimate follows recency
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97cb3127, 0xb7f3d3a5, 0x5a6ec5bd, 0xd7ba3d25};
+        private static final int MAXIMUM_COUNT = 15;
+
+        private int[] table = new int[16];
+        private int sampleSize = 160;
+        private int additions;
+
+        void ensureCapacity(int expectedSize) {
+            int size = Integer.highestOneBit(Math.max(16, expectedSize) - 1) << 1;
+            if (size <= table.length || size <= 0) {
+                return;
+            }
+            //Doubling the table only adds a high bit to each index, so copying the counters keeps the estimates
+            int[] grown = new int[size];
+            for (int i = 0; i < size; i++) {
+                grown[i] = table[i & (table.length - 1)];
+            }
+            table = grown;
+            sampleSize = 10 * size;
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAXIMUM_COUNT;
+            for (int seed : SEEDS) {
+                frequency = Math.min(frequency, table[indexOf(hash, seed)]);
+            }
+            return frequency;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int seed : SEEDS) {
+                int index = indexOf(hash, seed);
+                if (table[index] < MAXIMUM_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>>= 1;
+                }
+                additions >>>= 1;
+            }
+        }
+
+        private int indexOf(int hash, int seed) {
+            int index = (hash + seed) * seed;
+            index += index >>> 16;
+            return index & (table.length - 1);
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
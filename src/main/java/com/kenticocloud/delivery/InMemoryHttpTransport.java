@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link HttpTransport} serving canned responses from memory, keyed on the full request URI including the query.
+ * <p>
+ * No sockets, threads or copies are involved: each response wraps the registered byte array directly.  This makes it
+ * suitable for running the whole client pipeline at full speed in benchmarks, and for tests.  Requests to URIs with no
+ * registered response are answered with 404 Not Found.
+ * <pre>
+ * InMemoryHttpTransport transport = new InMemoryHttpTransport();
+ * transport.register("https://deliver.kenticocloud.com/&lt;YOUR_PROJECT_ID&gt;/items/on_roasts", json);
+ * client.setHttpTransport(transport);
+ * </pre>
+ */
+public class InMemoryHttpTransport implements HttpTransport {
+
+    private static final byte[] NOT_FOUND_BODY = ("{\"message\":\"The requested resource was not registered.\"," +
+            "\"request_id\":\"\",\"error_code\":100,\"specific_code\":0}").getBytes(StandardCharsets.UTF_8);
+
+    private final ConcurrentHashMap<String, CannedResponse> responses = new ConcurrentHashMap<>();
+    private final LongAdder requestCount = new LongAdder();
+
+    /**
+     * Registers a 200 OK JSON response for the request URI, replacing any existing one.
+     * @param requestUri The full URI of the request, including the query
+     * @param body The body of the response, not copied
+     */
+    public void register(String requestUri, byte[] body) {
+        register(requestUri, HttpStatus.SC_OK, body);
+    }
+
+    /**
+     * Registers a JSON response for the request URI, replacing any existing one.
+     * @param requestUri The full URI of the request, including the query
+     * @param statusCode The status code of the response
+     * @param body The body of the response, not copied
+     * @param headers Headers to add to the response
+     */
+    public void register(String requestUri, int statusCode, byte[] body, Header... headers) {
+        responses.put(requestUri, new CannedResponse(statusCode, body, headers));
+    }
+
+    /**
+     * Removes all registered responses.
+     */
+    public void clear() {
+        responses.clear();
+    }
+
+    /**
+     * Gets the number of requests served by this transport.
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        requestCount.increment();
+        CannedResponse cannedResponse = responses.get(request.getURI().toString());
+        if (cannedResponse == null) {
+            return toHttpResponse(HttpStatus.SC_NOT_FOUND, NOT_FOUND_BODY, new Header[0]);
+        }
+        return toHttpResponse(cannedResponse.statusCode, cannedResponse.body, cannedResponse.headers);
+    }
+
+    @Override
+    public void close() {
+        //Nothing to release
+    }
+
+    private static HttpResponse toHttpResponse(int statusCode, byte[] body, Header[] headers) {
+        BasicHttpResponse response = new BasicHttpResponse(
+                HttpVersion.HTTP_1_1, statusCode, EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, null));
+        response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        response.setHeaders(headers);
+        return response;
+    }
+
+    private static class CannedResponse {
+
+        final int statusCode;
+        final byte[] body;
+        final Header[] headers;
+
+        CannedResponse(int statusCode, byte[] body, Header[] headers) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.headers = headers.clone();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Read-only lists, maps and suppliers of modular content items which convert each item the first time it is accessed,
+ * used by the {@link StronglyTypedContentItemConverter} for lazily populated fields.
+ * <p>
+ * Converted items are kept, so every access after the first returns the same instance.  They are safe to share
+ * between threads; two threads accessing an item at the same time may both convert it, but only one of the results is
+ * kept and returned to both.
+ */
+final class LazyModularContent {
+
+    //Stands for an item converted to null, as unconverted slots hold null
+    private static final Object NULL = new Object();
+
+    private LazyModularContent() {
+        //static only
+    }
+
+    static <T> List<T> list(Map<String, ContentItem> items, BiFunction<String, ContentItem, T> converter) {
+        return new ConvertingList<>(new Slots<>(items, converter));
+    }
+
+    static <T> Map<String, T> map(Map<String, ContentItem> items, BiFunction<String, ContentItem, T> converter) {
+        return new ConvertingMap<>(new Slots<>(items, converter));
+    }
+
+    static <T> Supplier<T> supplier(String codename, ContentItem item, BiFunction<String, ContentItem, T> converter) {
+        Slots<T> slots = new Slots<>(new String[]{codename}, new ContentItem[]{item}, converter);
+        return () -> slots.get(0);
+    }
+
+    private static final class Slots<T> {
+
+        private final String[] codenames;
+        private final ContentItem[] items;
+        private final BiFunction<String, ContentItem, T> converter;
+        private final AtomicReferenceArray<Object> converted;
+
+        private Slots(Map<String, ContentItem> items, BiFunction<String, ContentItem, T> converter) {
+            this(items.keySet().toArray(new String[0]), items.values().toArray(new ContentItem[0]), converter);
+        }
+
+        private Slots(String[] codenames, ContentItem[] items, BiFunction<String, ContentItem, T> converter) {
+            this.codenames = codenames;
+            this.items = items;
+            this.converter = converter;
+            this.converted = new AtomicReferenceArray<>(items.length);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T get(int index) {
+            Object value = converted.get(index);
+            if (value == null) {
+                T conversion = converter.apply(codenames[index], items[index]);
+                converted.compareAndSet(index, null, conversion == null ? NULL : conversion);
+                value = converted.get(index);
+            }
+            return value == NULL ? null : (T) value;
+        }
+
+        private int size() {
+            return items.length;
+        }
+    }
+
+    private static final class ConvertingList<T> extends AbstractList<T> implements RandomAccess {
+
+        private final Slots<T> slots;
+
+        private ConvertingList(Slots<T> slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= slots.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + slots.size());
+            }
+            return slots.get(index);
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+    }
+
+    private static final class ConvertingMap<T> extends AbstractMap<String, T> {
+
+        private final Slots<T> slots;
+        private final Map<String, Integer> indexes;
+        private final Set<Entry<String, T>> entrySet = new EntrySet();
+
+        private ConvertingMap(Slots<T> slots) {
+            this.slots = slots;
+            this.indexes = new HashMap<>();
+            for (int i = 0; i < slots.size(); i++) {
+                indexes.put(slots.codenames[i], i);
+            }
+        }
+
+        @Override
+        public T get(Object key) {
+            Integer index = indexes.get(key);
+            return index == null ? null : slots.get(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+
+        @Override
+        public Set<Entry<String, T>> entrySet() {
+            return entrySet;
+        }
+
+        private final class EntrySet extends AbstractSet<Entry<String, T>> {
+
+            @Override
+            public Iterator<Entry<String, T>> iterator() {
+                return new Iterator<Entry<String, T>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < slots.size();
+                    }
+
+                    @Override
+                    public Entry<String, T> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new ConvertingEntry(next++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return slots.size();
+            }
+        }
+
+        //Converts the value only when asked for it, so iterating over the keys converts nothing
+        private final class ConvertingEntry implements Entry<String, T> {
+
+            private final int index;
+
+            private ConvertingEntry(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public String getKey() {
+                return slots.codenames[index];
+            }
+
+            @Override
+            public T getValue() {
+                return slots.get(index);
+            }
+
+            @Override
+            public T setValue(T value) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                return getKey().equals(entry.getKey()) &&
+                        (getValue() == null ? entry.getValue() == null : getValue().equals(entry.getValue()));
+            }
+
+            @Override
+            public int hashCode() {
+                return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+            }
+
+            @Override
+            public String toString() {
+                return getKey() + "=" + getValue();
+            }
+        }
+    }
+}
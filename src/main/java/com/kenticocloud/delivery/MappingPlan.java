@@ -0,0 +1,254 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConstructorUtils;
+import org.apache.commons.beanutils.PropertyUtilsBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * How to map content items onto instances of a class, worked out once per class by the
+ * {@link StronglyTypedContentItemConverter}.
+ * <p>
+ * The plan holds everything about the target class the conversion needs, but which does not depend on the content
+ * item being converted: the declared fields, their {@link ElementMapping} and {@link ContentItemMapping} annotations,
+ * the codenames derived from their names, the element types of their collections, and method handles to their
+ * setters and to the default constructor.  When a {@link ContentItemMapper} was generated for the class, instances are
+ * created and filled through it instead.  Plans are immutable, and shared by all threads.
+ */
+final class MappingPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingPlan.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final ContentItemMapper<Object> mapper;
+    private final List<FieldBinding> bindings;
+
+    private MappingPlan(
+            Class<?> type, MethodHandle constructor, ContentItemMapper<Object> mapper, List<FieldBinding> bindings) {
+        this.type = type;
+        this.constructor = constructor;
+        this.mapper = mapper;
+        this.bindings = bindings;
+    }
+
+    static MappingPlan of(Class<?> type) {
+        return of(type, null);
+    }
+
+    static MappingPlan of(Class<?> type, ContentItemMapper<?> generatedMapper) {
+        ContentItemMapper<Object> mapper = asObjectMapper(generatedMapper);
+        Map<String, PropertyDescriptor> properties = new HashMap<>();
+        PropertyUtilsBean propertyUtils = BeanUtilsBean.getInstance().getPropertyUtils();
+        for (PropertyDescriptor propertyDescriptor : propertyUtils.getPropertyDescriptors(type)) {
+            properties.put(propertyDescriptor.getName(), propertyDescriptor);
+        }
+        List<FieldBinding> bindings = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            Method writeMethod = null;
+            PropertyDescriptor propertyDescriptor = properties.get(field.getName());
+            if (propertyDescriptor != null) {
+                writeMethod = propertyUtils.getWriteMethod(propertyDescriptor);
+            }
+            bindings.add(new FieldBinding(field, writeMethod, mapper));
+        }
+        return new MappingPlan(type, mapper == null ? findConstructor(type) : null, mapper,
+                Collections.unmodifiableList(bindings));
+    }
+
+    //The mapper is only ever handed instances of the class it was looked up for
+    @SuppressWarnings("unchecked")
+    private static ContentItemMapper<Object> asObjectMapper(ContentItemMapper<?> mapper) {
+        return (ContentItemMapper<Object>) mapper;
+    }
+
+    /**
+     * Creates an instance of the class with its default constructor.
+     * @throws InvocationTargetException Thrown if the constructor throws
+     * @throws NoSuchMethodException Thrown if the class has no accessible default constructor
+     */
+    Object newInstance()
+            throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, InstantiationException {
+        if (mapper != null) {
+            return mapper.newInstance();
+        }
+        if (constructor == null) {
+            //Let BeanUtils report why the class cannot be instantiated
+            return ConstructorUtils.invokeConstructor(type, null);
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    List<FieldBinding> getBindings() {
+        return bindings;
+    }
+
+    private static MethodHandle findConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            logger.debug("No default constructor handle for {}: {}", type, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * How to fill one field of the class.
+     */
+    static final class FieldBinding {
+
+        final Field field;
+        final Class<?> type;
+        final boolean listOrMap;
+        //A Supplier field is filled with a modular content item converted on first access
+        final boolean supplier;
+        final String elementCodename;
+        final String contentItemCodename;
+        //Derived from the field name, for implicit mappings
+        final String candidateCodename;
+        //The type of the values of a list, map or supplier field, null if it cannot be told from the setter
+        final Type valueType;
+
+        private final String propertyName;
+        private final Class<?> setterParameterType;
+        private final MethodHandle setter;
+        private final ContentItemMapper<Object> mapper;
+
+        FieldBinding(Field field, Method writeMethod, ContentItemMapper<Object> mapper) {
+            this.field = field;
+            this.type = field.getType();
+            this.listOrMap = List.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+            this.supplier = type == Supplier.class;
+            ElementMapping elementMapping = field.getAnnotation(ElementMapping.class);
+            this.elementCodename = elementMapping == null ? null : elementMapping.value();
+            ContentItemMapping contentItemMapping = field.getAnnotation(ContentItemMapping.class);
+            this.contentItemCodename = contentItemMapping == null ? null : contentItemMapping.value();
+            this.candidateCodename = fromCamelCase(field.getName());
+            this.propertyName = field.getName();
+            this.valueType = listOrMap || supplier ? getValueType(field, writeMethod) : null;
+            this.setterParameterType = writeMethod == null ? null : wrap(writeMethod.getParameterTypes()[0]);
+            this.mapper = mapper;
+            //Generated mappers set the field without a method handle
+            this.setter = writeMethod == null || mapper != null ? null : unreflect(writeMethod);
+        }
+
+        /**
+         * Sets the field through its setter.  Values the setter does not accept as they are go through BeanUtils,
+         * which converts them where it can.
+         */
+        void set(Object bean, Object value) throws IllegalAccessException, InvocationTargetException {
+            if (mapper != null) {
+                if (!mapper.setValue(bean, propertyName, value)) {
+                    BeanUtils.setProperty(bean, propertyName, value);
+                }
+                return;
+            }
+            if (setter == null || !setterParameterType.isInstance(value)) {
+                BeanUtils.setProperty(bean, propertyName, value);
+                return;
+            }
+            try {
+                setter.invokeExact(bean, value);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field.toString();
+        }
+
+        private static Type getValueType(Field field, Method writeMethod) {
+            //Because of type erasure, the value type is read off the generic parameter of the setter
+            if (writeMethod == null) {
+                logger.debug("No write method for {} (probably a missing setter)", field);
+                return null;
+            }
+            Type parameterType = writeMethod.getGenericParameterTypes()[0];
+            if (!(parameterType instanceof ParameterizedType)) {
+                logger.debug("No type arguments on the setter of {}", field);
+                return null;
+            }
+            Type[] actualTypeArguments = ((ParameterizedType) parameterType).getActualTypeArguments();
+            return Map.class.isAssignableFrom(field.getType()) ? actualTypeArguments[1] : actualTypeArguments[0];
+        }
+
+        private static MethodHandle unreflect(Method writeMethod) {
+            try {
+                writeMethod.setAccessible(true);
+                return MethodHandles.lookup().unreflect(writeMethod).asType(SETTER_TYPE);
+            } catch (IllegalAccessException | RuntimeException e) {
+                logger.debug("No setter handle for {}: {}", writeMethod, e.getMessage());
+                return null;
+            }
+        }
+
+        private static Class<?> wrap(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return type;
+            }
+            return MethodType.methodType(type).wrap().returnType();
+        }
+
+        private static String fromCamelCase(String s) {
+            String regex = "([a-z])([A-Z]+)";
+            String replacement = "$1_$2";
+            return s.replaceAll(regex, replacement).toLowerCase();
+        }
+    }
+}
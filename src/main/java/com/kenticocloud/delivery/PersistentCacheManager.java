@@ -0,0 +1,797 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link CacheManager} persisting responses to a local directory, so a restarted process can serve them at once
+ * instead of retrieving every response from the Delivery API again.
+ * <p>
+ * Responses are appended as raw JSON to memory-mapped segment files, along with their expiry time and their {@code ETag} and
+ * {@code Last-Modified} validators.  An in-memory index keyed on the request URI points into the segments; it is
+ * rebuilt by scanning the segments when the cache is opened, skipping records torn by a crash.  When the segments
+ * outgrow the maximum size, the oldest segment is deleted along with the responses it holds.  The
+ * {@link DeliveryClient} reads responses through {@link #resolveResponse(String, HttpRequestExecutor)}, which stores
+ * and serves the bytes as received without parsing them; responses parsed by
+ * {@link #resolveRequest(String, HttpRequestExecutor)} are kept in memory for as long as the heap allows.
+ * <p>
+ * Expiry and revalidation work as in {@link InMemoryCacheManager}, with expiry times based on the wall clock so they
+ * survive restarts.  Combined with {@link #setStaleWhileRevalidate(long, TimeUnit)}, responses persisted by a previous
+ * process are served immediately after a restart and revalidated in the background.
+ * <pre>
+ * PersistentCacheManager cacheManager = new PersistentCacheManager(
+ *         Paths.get("/var/cache/kentico"), 256 * 1024 * 1024, 5, TimeUnit.MINUTES);
+ * cacheManager.setStaleWhileRevalidate(1, TimeUnit.DAYS);
+ * client.setCacheManager(cacheManager);
+ * </pre>
+ * A directory must not be shared by several open caches.  Close the cache to flush it to disk.
+ */
+public class PersistentCacheManager implements CacheManager, Closeable {
+
+    static final long DEFAULT_MAXIMUM_SIZE = 256L * 1024 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentCacheManager.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final long MAXIMUM_SEGMENT_SIZE = 16L * 1024 * 1024;
+    private static final long MINIMUM_SEGMENT_SIZE = 64L * 1024;
+    private static final int SEGMENTS_PER_CACHE = 8;
+
+    private static final int RECORD_MAGIC = 0x4B434345;
+    //Magic, payload length and CRC32 of the payload
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int NO_BODY = -1;
+
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 64;
+
+    private final Path directory;
+    private final long maximumSize;
+    private final int segmentSize;
+    private final long timeToLiveMillis;
+
+    private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    //Guarded by the write lock, oldest first
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private Segment activeSegment;
+    private boolean closed;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder revalidationCount = new LongAdder();
+    private final LongAdder staleHitCount = new LongAdder();
+
+    private volatile long staleWhileRevalidateMillis;
+    private volatile long staleIfErrorMillis;
+    private volatile Executor refreshExecutor;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Opens a cache in the given directory, holding up to 256 MB of responses for 60 seconds each.
+     * @param directory The directory to persist responses in, created if it does not exist
+     * @throws IOException Thrown if the directory cannot be created or read
+     */
+    public PersistentCacheManager(Path directory) throws IOException {
+        this(directory, DEFAULT_MAXIMUM_SIZE, InMemoryCacheManager.DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens a cache in the given directory with the given bounds.
+     * @param directory The directory to persist responses in, created if it does not exist
+     * @param maximumSize The maximum size of the files in the directory, in bytes
+     * @param timeToLive How long a response is served from the cache after it was retrieved
+     * @param unit The unit of the timeToLive argument
+     * @throws IOException Thrown if the directory cannot be created or read
+     */
+    public PersistentCacheManager(Path directory, long maximumSize, long timeToLive, TimeUnit unit)
+            throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("The cache directory is not specified.");
+        }
+        if (maximumSize < MINIMUM_SEGMENT_SIZE * 2) {
+            throw new IllegalArgumentException(
+                    String.format("The maximum size must be at least %d bytes.", MINIMUM_SEGMENT_SIZE * 2));
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("The time to live must not be negative.");
+        }
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+        this.segmentSize = (int) Math.max(MINIMUM_SEGMENT_SIZE,
+                Math.min(MAXIMUM_SEGMENT_SIZE, maximumSize / SEGMENTS_PER_CACHE));
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+        Files.createDirectories(directory);
+        load();
+    }
+
+    @Override
+    public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+        return resolve(requestUri, executor, true).getBody();
+    }
+
+    @Override
+    public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+        return resolveAsync(requestUri, executor, true).thenApply(CachedResponse::getBody);
+    }
+
+    /**
+     * Resolves a request like {@link #resolveRequest(String, HttpRequestExecutor)}, but retrieves and returns the body
+     * as the bytes it is stored as, so it is never parsed into a tree on the way in or out of the cache.
+     */
+    @Override
+    public CachedResponse resolveResponse(String requestUri, HttpRequestExecutor executor) throws IOException {
+        return resolve(requestUri, executor, false);
+    }
+
+    @Override
+    public CompletableFuture<CachedResponse> resolveResponseAsync(String requestUri, HttpRequestExecutor executor) {
+        return resolveAsync(requestUri, executor, false);
+    }
+
+    private CachedResponse resolve(String requestUri, HttpRequestExecutor executor, boolean parsed)
+            throws IOException {
+        Entry entry = index.get(requestUri);
+        if (isServable(requestUri, entry, executor)) {
+            return hit(entry, parsed);
+        }
+        missCount.increment();
+        CachedResponse response;
+        try {
+            response = executor.executeConditionallyUnparsed(getRevalidationCandidate(entry));
+        } catch (IOException e) {
+            if (isServableOnError(entry)) {
+                logger.warn("Serving stale response for {} after error: {}", requestUri, e.getMessage());
+                staleHitCount.increment();
+                return hit(entry, parsed);
+            }
+            throw e;
+        }
+        return store(requestUri, response, entry, parsed);
+    }
+
+    private CompletableFuture<CachedResponse> resolveAsync(
+            String requestUri, HttpRequestExecutor executor, boolean parsed) {
+        Entry entry = index.get(requestUri);
+        CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+        try {
+            if (isServable(requestUri, entry, executor)) {
+                future.complete(hit(entry, parsed));
+                return future;
+            }
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        missCount.increment();
+        executor.executeConditionallyUnparsedAsync(getRevalidationCandidate(entry)).whenComplete((response, e) -> {
+            try {
+                if (e == null) {
+                    future.complete(store(requestUri, response, entry, parsed));
+                    return;
+                }
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof IOException && isServableOnError(entry)) {
+                    logger.warn("Serving stale response for {} after error: {}", requestUri, cause.getMessage());
+                    staleHitCount.increment();
+                    future.complete(hit(entry, parsed));
+                } else {
+                    future.completeExceptionally(cause);
+                }
+            } catch (IOException | RuntimeException storeException) {
+                future.completeExceptionally(storeException);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Serves expired responses for up to the given duration past their expiry, while refreshing them in the
+     * background.  Only one refresh runs per request URI at a time.  Defaults to zero, which disables serving stale
+     * responses.
+     * @param duration The maximum staleness of a response served while it is being refreshed
+     * @param unit The unit of the duration argument
+     */
+    public void setStaleWhileRevalidate(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The stale-while-revalidate duration must not be negative.");
+        }
+        this.staleWhileRevalidateMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * Serves expired responses for up to the given duration past their expiry when retrieving a fresh response fails
+     * with an {@link IOException}.  Defaults to zero.
+     * @param duration The maximum staleness of a response served in place of an error
+     * @param unit The unit of the duration argument
+     */
+    public void setStaleIfError(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The stale-if-error duration must not be negative.");
+        }
+        this.staleIfErrorMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * Sets the executor which refreshes stale responses in the background.  By default, a pool of two daemon threads
+     * with a bounded queue is used, and refreshes which do not fit in the queue are skipped until the next request.
+     * @param refreshExecutor The executor to refresh stale responses with, or null to use the default
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Persists a response for the request URI along with its caching metadata, replacing any existing entry.
+     * Responses marked no-store, or too large to fit in a segment, are not cached.
+     * @param requestUri The URI of the request
+     * @param response The response to cache
+     * @throws IOException Thrown if the response cannot be written
+     */
+    public void put(String requestUri, CachedResponse response) throws IOException {
+        if (response.isNoStore()) {
+            invalidate(requestUri);
+            return;
+        }
+        append(requestUri, response, response.getContent(), expiresAt(requestUri, response), response.isCompact() ? null
+                : new CachedResponse(response.getBody(), response.getETag(), response.getLastModified(), null));
+    }
+
+    /**
+     * Discards the cached response for the request URI, if any, on disk as well.
+     * @param requestUri The URI of the request
+     * @throws IOException Thrown if the removal cannot be written
+     */
+    public void invalidate(String requestUri) throws IOException {
+        if (index.containsKey(requestUri)) {
+            append(requestUri, null, null, 0, null);
+        }
+    }
+
+    /**
+     * Discards all cached responses, and deletes their files.
+     * @throws IOException Thrown if the files cannot be deleted
+     */
+    public void invalidateAll() throws IOException {
+        writeLock.lock();
+        try {
+            ensureOpen();
+            index.clear();
+            while (!segments.isEmpty()) {
+                deleteSegment(segments.removeFirst());
+            }
+            activeSegment = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of requests which were not cached, or whose cached response had expired.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of expired responses renewed by a 304 Not Modified answer to a conditional request.
+     * @return the number of revalidations
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.sum();
+    }
+
+    /**
+     * Gets the number of expired responses served while being refreshed, or in place of an error.  These are also
+     * counted as hits.
+     * @return the number of stale hits
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.sum();
+    }
+
+    /**
+     * Gets the number of cached responses, including expired responses not yet discarded.
+     * @return the number of entries
+     */
+    public long getSize() {
+        return index.size();
+    }
+
+    /**
+     * Gets the size of the segment files in the cache directory.
+     * @return the size on disk, in bytes
+     */
+    public long getDiskSize() {
+        writeLock.lock();
+        try {
+            return (long) segments.size() * segmentSize;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the cached responses to disk and closes the segment files.  The cache cannot be used afterwards.
+     * @throws IOException Thrown if a segment file fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            index.clear();
+            IOException failure = null;
+            for (Segment segment : segments) {
+                try {
+                    segment.buffer.force();
+                    segment.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            segments.clear();
+            activeSegment = null;
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Determines how long a newly retrieved or revalidated response is served from the cache.  Returns the max-age
+     * stated by the server if present, or the time to live configured on construction otherwise.  Override to vary it
+     * per request.
+     * @param requestUri The URI of the request
+     * @param response The retrieved response
+     * @return The time to live of the entry, in milliseconds
+     */
+    protected long expireAfterCreate(String requestUri, CachedResponse response) {
+        if (response.getMaxAge() >= 0) {
+            return TimeUnit.SECONDS.toMillis(response.getMaxAge());
+        }
+        return timeToLiveMillis;
+    }
+
+    private long expiresAt(String requestUri, CachedResponse response) {
+        return java.lang.System.currentTimeMillis() + expireAfterCreate(requestUri, response);
+    }
+
+    private boolean isServable(String requestUri, Entry entry, HttpRequestExecutor executor) {
+        if (entry == null) {
+            return false;
+        }
+        long now = java.lang.System.currentTimeMillis();
+        if (entry.expiresAt > now) {
+            return true;
+        }
+        if (entry.expiresAt + staleWhileRevalidateMillis <= now) {
+            return false;
+        }
+        staleHitCount.increment();
+        refresh(requestUri, entry, executor);
+        return true;
+    }
+
+    private boolean isServableOnError(Entry entry) {
+        return entry != null && entry.expiresAt + staleIfErrorMillis > java.lang.System.currentTimeMillis();
+    }
+
+    private void refresh(String requestUri, Entry entry, HttpRequestExecutor executor) {
+        if (!refreshing.add(requestUri)) {
+            return;
+        }
+        //The triggering request was served from the cache, the refresh must not count as its miss
+        HttpRequestExecutor detachedExecutor = executor.detached();
+        Runnable refresh = () -> {
+            try {
+                store(requestUri, detachedExecutor.executeConditionallyUnparsed(getRevalidationCandidate(entry)), entry,
+                        false);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to refresh stale response for {}: {}", requestUri, e.getMessage());
+            } finally {
+                refreshing.remove(requestUri);
+            }
+        };
+        try {
+            getRefreshExecutor().execute(refresh);
+        } catch (RuntimeException e) {
+            refreshing.remove(requestUri);
+            logger.debug("Skipped refreshing stale response for {}: {}", requestUri, e.getMessage());
+        }
+    }
+
+    private Executor getRefreshExecutor() {
+        Executor executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                            REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                            runnable -> {
+                                Thread thread = new Thread(
+                                        runnable, "kentico-persistent-cache-refresh-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    pool.allowCoreThreadTimeOut(true);
+                    refreshExecutor = executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private CachedResponse hit(Entry entry, boolean parsed) throws IOException {
+        hitCount.increment();
+        return entry.toResponse(parsed);
+    }
+
+    //The validators are kept in the index, so revalidating does not read the body until it is found unchanged
+    private static CachedResponse getRevalidationCandidate(Entry entry) {
+        if (entry == null || (entry.eTag == null && entry.lastModified == null)) {
+            return null;
+        }
+        return CachedResponse.validators(entry.eTag, entry.lastModified);
+    }
+
+    //Appends the body as received, only parsing it when the caller asked for a tree
+    private CachedResponse store(String requestUri, CachedResponse response, Entry previous, boolean parsed)
+            throws IOException {
+        boolean notModified = response.isNotModified() && previous != null;
+        //An unchanged body is copied from the previous record, as the revalidated response does not hold it
+        byte[] body = notModified ? previous.readBodyBytes() : response.getContent();
+        CachedResponse stored;
+        if (parsed) {
+            JsonNode tree = notModified ? previous.getBody() : objectMapper.readTree(body);
+            stored = new CachedResponse(tree, response.getETag(), response.getLastModified(), null);
+        } else {
+            stored = new CachedResponse(body, response.getETag(), response.getLastModified(), null);
+        }
+        if (response.isNoStore()) {
+            invalidate(requestUri);
+        } else {
+            if (notModified) {
+                revalidationCount.increment();
+            }
+            append(requestUri, response, body, expiresAt(requestUri, response), stored);
+        }
+        return stored;
+    }
+
+    //A null response appends a tombstone; the stored response, if any, is what the first hit on the entry returns
+    private void append(String requestUri, CachedResponse response, byte[] body, long expiresAt,
+                        CachedResponse stored)
+            throws IOException {
+        byte[] payload = encodePayload(requestUri, response, body, expiresAt);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            logger.debug("Response for {} is too large to persist ({} bytes)", requestUri, recordSize);
+            index.remove(requestUri);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        writeLock.lock();
+        try {
+            ensureOpen();
+            Segment segment = activeSegment;
+            if (segment == null || segment.position + recordSize > segmentSize) {
+                segment = rollSegment();
+            }
+            int offset = segment.position;
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset + 4);
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+            //The magic goes last, so a record is only visible to a scan once it is complete
+            segment.buffer.putInt(offset, RECORD_MAGIC);
+            segment.position = offset + recordSize;
+            if (response == null) {
+                index.remove(requestUri);
+            } else {
+                int bodyOffset = offset + recordSize - body.length;
+                index.put(requestUri, new Entry(
+                        segment, bodyOffset, body.length, expiresAt, response.getETag(), response.getLastModified(),
+                        stored));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static byte[] encodePayload(String requestUri, CachedResponse response, byte[] body, long expiresAt)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (body == null ? 0 : body.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(expiresAt);
+        writeString(out, requestUri);
+        writeString(out, response == null ? null : response.getETag());
+        writeString(out, response == null ? null : response.getLastModified());
+        if (body == null) {
+            out.writeInt(NO_BODY);
+        } else {
+            out.writeInt(body.length);
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Guarded by the write lock
+    private Segment rollSegment() throws IOException {
+        long id = segments.isEmpty() ? 0 : segments.peekLast().id + 1;
+        //Leave room for the new segment
+        while (!segments.isEmpty() && (long) (segments.size() + 1) * segmentSize > maximumSize) {
+            Segment oldest = segments.removeFirst();
+            index.values().removeIf(entry -> entry.segment == oldest);
+            deleteSegment(oldest);
+        }
+        Segment segment = openSegment(directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)),
+                id);
+        segments.addLast(segment);
+        activeSegment = segment;
+        return segment;
+    }
+
+    private Segment openSegment(Path path, long id) throws IOException {
+        FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(id, path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void deleteSegment(Segment segment) throws IOException {
+        segment.channel.close();
+        //The mapping stays readable until it is garbage collected, so concurrent reads of evicted entries still work
+        Files.deleteIfExists(segment.path);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The persistent cache is closed.");
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        writeLock.lock();
+        try {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                long id;
+                try {
+                    id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (Files.size(path) != segmentSize) {
+                    //Written with another maximum size, start over rather than guess
+                    Files.delete(path);
+                    continue;
+                }
+                Segment segment = openSegment(path, id);
+                segments.addLast(segment);
+                scan(segment);
+            }
+            //Appending to a new segment keeps the loaded ones immutable
+            activeSegment = null;
+        } finally {
+            writeLock.unlock();
+        }
+        logger.info("Loaded {} cached responses from {}", index.size(), directory);
+    }
+
+    //Guarded by the write lock
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            buffer.position(offset);
+            if (buffer.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (payloadLength < 0 || payloadLength > segmentSize - offset - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Ignoring the torn end of {}", segment.path);
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            long expiresAt = record.getLong();
+            String requestUri = readString(record);
+            String eTag = readString(record);
+            String lastModified = readString(record);
+            int bodyLength = record.getInt();
+            if (bodyLength == NO_BODY) {
+                index.remove(requestUri);
+            } else {
+                int bodyOffset = offset + RECORD_HEADER_SIZE + record.position();
+                index.put(requestUri,
+                        new Entry(segment, bodyOffset, bodyLength, expiresAt, eTag, lastModified, null));
+            }
+            offset += RECORD_HEADER_SIZE + payloadLength;
+        }
+        segment.position = offset;
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        //Guarded by the write lock
+        int position;
+
+        Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Entry {
+        final Segment segment;
+        final int bodyOffset;
+        final int bodyLength;
+        final long expiresAt;
+        final String eTag;
+        final String lastModified;
+
+        //Keeps the last response handed out until the heap runs short.  Hits return the same response, so results
+        //built from its body can be shared through a ResultCache.
+        volatile SoftReference<CachedResponse> response;
+
+        Entry(Segment segment, int bodyOffset, int bodyLength, long expiresAt, String eTag, String lastModified,
+              CachedResponse response) {
+            this.segment = segment;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+            this.expiresAt = expiresAt;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.response = response == null ? null : new SoftReference<>(response);
+        }
+
+        JsonNode getBody() throws IOException {
+            return toResponse(true).getBody();
+        }
+
+        //A response holding a tree also serves callers which did not ask for one
+        CachedResponse toResponse(boolean parsed) throws IOException {
+            SoftReference<CachedResponse> reference = response;
+            CachedResponse cached = reference == null ? null : reference.get();
+            if (cached == null || (parsed && cached.isCompact())) {
+                cached = parsed ? new CachedResponse(objectMapper.readTree(readBodyBytes()), eTag, lastModified, null)
+                        : new CachedResponse(readBodyBytes(), eTag, lastModified, null);
+                response = new SoftReference<>(cached);
+            }
+            return cached;
+        }
+
+        byte[] readBodyBytes() {
+            byte[] bytes = new byte[bodyLength];
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(bodyOffset);
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+}
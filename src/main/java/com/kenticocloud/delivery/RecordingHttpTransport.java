@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An {@link HttpTransport} decorator recording every exchange to a compact archive on disk, for replaying later with a
+ * {@link ReplayHttpTransport}.
+ * <p>
+ * Each request URI is recorded with when the request started, how long it took, and the response status, headers and
+ * body bytes exactly as received, compressed or not, or the error the request failed with.  Request headers, which carry
+ * the API keys, are not recorded.  Responses are buffered in memory to record them, and the archive is complete once the
+ * transport is closed.
+ * <pre>
+ * client.setHttpTransport(new RecordingHttpTransport(new ApacheHttpTransport(deliveryOptions), archive));
+ * </pre>
+ */
+public class RecordingHttpTransport implements HttpTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingHttpTransport.class);
+
+    private final HttpTransport delegate;
+    private final TrafficArchive.Writer writer;
+    private final long startNanos = java.lang.System.nanoTime();
+
+    /**
+     * Constructs a transport recording the exchanges of the given transport.
+     * @param delegate The transport sending the requests, closed along with this one
+     * @param archive The file to record to, replaced if it exists
+     * @throws IOException Thrown if the archive cannot be created
+     */
+    public RecordingHttpTransport(HttpTransport delegate, Path archive) throws IOException {
+        if (delegate == null) {
+            throw new IllegalArgumentException("The transport to record is not specified.");
+        }
+        this.delegate = delegate;
+        this.writer = new TrafficArchive.Writer(archive);
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        long start = java.lang.System.nanoTime();
+        HttpResponse response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException e) {
+            recordFailure(request, start, e);
+            throw e;
+        }
+        return record(request, start, response);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request) {
+        long start = java.lang.System.nanoTime();
+        return delegate.executeAsync(request).handle((response, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                recordFailure(request, start, cause);
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            }
+            try {
+                return record(request, start, response);
+            } catch (IOException readException) {
+                throw new CompletionException(readException);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private HttpResponse record(HttpUriRequest request, long start, HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+        long latency = java.lang.System.nanoTime() - start;
+        if (entity != null) {
+            ByteArrayEntity bufferedEntity = new ByteArrayEntity(body);
+            bufferedEntity.setContentType(entity.getContentType());
+            bufferedEntity.setContentEncoding(entity.getContentEncoding());
+            response.setEntity(bufferedEntity);
+        }
+        write(new TrafficArchive.Exchange(
+                request.getURI().toString(),
+                start - startNanos,
+                latency,
+                response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase(),
+                response.getAllHeaders(),
+                body));
+        return response;
+    }
+
+    private void recordFailure(HttpUriRequest request, long start, Throwable failure) {
+        String message = failure.getMessage() == null ? failure.getClass().getName() : failure.getMessage();
+        write(new TrafficArchive.Exchange(
+                request.getURI().toString(), start - startNanos, java.lang.System.nanoTime() - start, message));
+    }
+
+    private void write(TrafficArchive.Exchange exchange) {
+        try {
+            writer.write(exchange);
+        } catch (IOException e) {
+            //Recording is best effort, it must not fail the request
+            logger.warn("Failed to record {}: {}", exchange.requestUri, e.getMessage());
+        }
+    }
+}
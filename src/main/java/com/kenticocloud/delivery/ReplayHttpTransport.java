@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link HttpTransport} serving the exchanges recorded by a {@link RecordingHttpTransport}, without any network
+ * access.
+ * <p>
+ * Requests are matched on their full URI.  When a URI was recorded several times, its responses are served in the
+ * recorded order, starting over after the last one, and recorded failures are thrown again as {@link IOException}s.
+ * Each response is delayed by its recorded latency multiplied by the latency scale, so a replay can run with the
+ * original latency profile, a scaled one, or none at all.  URIs which were not recorded are answered with 404 Not
+ * Found.
+ * <pre>
+ * ReplayHttpTransport transport = new ReplayHttpTransport(archive);
+ * transport.setLatencyScale(0);
+ * client.setHttpTransport(transport);
+ * </pre>
+ */
+public class ReplayHttpTransport implements HttpTransport {
+
+    private static final byte[] NOT_FOUND_BODY = ("{\"message\":\"The requested resource was not recorded.\"," +
+            "\"request_id\":\"\",\"error_code\":100,\"specific_code\":0}").getBytes(StandardCharsets.UTF_8);
+
+    private final List<String> requestUris;
+    private final List<Long> requestOffsets;
+    private final Map<String, RecordedResponses> responses = new HashMap<>();
+    private final LongAdder requestCount = new LongAdder();
+    private volatile double latencyScale = 1;
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * Loads an archive recorded by a {@link RecordingHttpTransport}.
+     * @param archive The archive to replay
+     * @throws IOException Thrown if the archive cannot be read
+     */
+    public ReplayHttpTransport(Path archive) throws IOException {
+        List<TrafficArchive.Exchange> exchanges = TrafficArchive.read(archive);
+        List<String> uris = new ArrayList<>(exchanges.size());
+        List<Long> offsets = new ArrayList<>(exchanges.size());
+        Map<String, List<TrafficArchive.Exchange>> exchangesByUri = new HashMap<>();
+        for (TrafficArchive.Exchange exchange : exchanges) {
+            uris.add(exchange.requestUri);
+            offsets.add(exchange.startOffsetNanos);
+            exchangesByUri.computeIfAbsent(exchange.requestUri, uri -> new ArrayList<>()).add(exchange);
+        }
+        exchangesByUri.forEach((uri, recorded) -> responses.put(uri, new RecordedResponses(recorded)));
+        requestUris = Collections.unmodifiableList(uris);
+        requestOffsets = Collections.unmodifiableList(offsets);
+    }
+
+    /**
+     * Sets the factor recorded latencies are multiplied by.
+     * @param latencyScale 1 to replay the original latencies, which is the default, 0 to respond immediately
+     */
+    public void setLatencyScale(double latencyScale) {
+        if (latencyScale < 0) {
+            throw new IllegalArgumentException("The latency scale must not be negative.");
+        }
+        this.latencyScale = latencyScale;
+    }
+
+    public double getLatencyScale() {
+        return latencyScale;
+    }
+
+    /**
+     * Gets the URIs of the recorded requests, in the order they were sent.
+     * @return the request URIs
+     */
+    public List<String> getRequestUris() {
+        return requestUris;
+    }
+
+    /**
+     * Gets when each recorded request was sent, in nanoseconds since the recording started, in the same order as
+     * {@link #getRequestUris()}.  A load driver can use them to send the requests again with their recorded arrival
+     * pattern, bursts included, as this transport only replays how long each response took.
+     * @return the start offsets of the recorded requests, in nanoseconds
+     */
+    public List<Long> getRequestOffsets() {
+        return requestOffsets;
+    }
+
+    /**
+     * Gets the number of requests served by this transport.
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        TrafficArchive.Exchange exchange = next(request);
+        long delay = getDelayNanos(exchange);
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying the latency of a response");
+            }
+        }
+        return toHttpResponse(exchange);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request) {
+        TrafficArchive.Exchange exchange = next(request);
+        long delay = getDelayNanos(exchange);
+        if (delay <= 0) {
+            return complete(exchange);
+        }
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            getScheduler().schedule(() -> complete(exchange).whenComplete((response, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(response);
+                }
+            }), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("The transport was closed", e));
+        }
+        return future;
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executorService = scheduler;
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private TrafficArchive.Exchange next(HttpUriRequest request) {
+        requestCount.increment();
+        String requestUri = request.getURI().toString();
+        RecordedResponses recorded = responses.get(requestUri);
+        if (recorded == null) {
+            return new TrafficArchive.Exchange(requestUri, 0, 0, HttpStatus.SC_NOT_FOUND, "Not Found",
+                    new Header[0], NOT_FOUND_BODY);
+        }
+        return recorded.next();
+    }
+
+    private long getDelayNanos(TrafficArchive.Exchange exchange) {
+        return (long) (exchange.latencyNanos * latencyScale);
+    }
+
+    private static CompletableFuture<HttpResponse> complete(TrafficArchive.Exchange exchange) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(toHttpResponse(exchange));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static HttpResponse toHttpResponse(TrafficArchive.Exchange exchange) throws IOException {
+        if (exchange.failure != null) {
+            throw new IOException(exchange.failure);
+        }
+        BasicHttpResponse response =
+                new BasicHttpResponse(HttpVersion.HTTP_1_1, exchange.statusCode, exchange.reasonPhrase);
+        //A fresh entity per response, the recorded bytes are shared and never modified
+        ByteArrayEntity entity = new ByteArrayEntity(exchange.body, ContentType.APPLICATION_JSON);
+        Header contentType = findHeader(exchange.headers, HttpHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            entity.setContentType(contentType);
+        }
+        entity.setContentEncoding(findHeader(exchange.headers, HttpHeaders.CONTENT_ENCODING));
+        response.setEntity(entity);
+        response.setHeaders(exchange.headers);
+        return response;
+    }
+
+    private static Header findHeader(Header[] headers, String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    private ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService executorService = scheduler;
+        if (executorService == null) {
+            synchronized (this) {
+                executorService = scheduler;
+                if (executorService == null) {
+                    executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "kentico-replay-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = executorService;
+                }
+            }
+        }
+        return executorService;
+    }
+
+    private static class RecordedResponses {
+
+        private final TrafficArchive.Exchange[] exchanges;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        RecordedResponses(List<TrafficArchive.Exchange> exchanges) {
+            this.exchanges = exchanges.toArray(new TrafficArchive.Exchange[exchanges.size()]);
+        }
+
+        TrafficArchive.Exchange next() {
+            return exchanges[Math.floorMod(cursor.getAndIncrement(), exchanges.length)];
+        }
+    }
+}
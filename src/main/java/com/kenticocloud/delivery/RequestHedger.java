@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.util.EntityUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends a second, identical request when the first one is slower than most recent requests, and completes with
+ * whichever response arrives first.
+ * <p>
+ * The hedge delay is a percentile of the latencies of recent requests, so only the slowest requests are hedged.  No
+ * request is hedged until enough latencies have been recorded.  A token bucket, refilled by a fraction of a token per
+ * request, caps hedges at that fraction of all requests, so an overloaded Delivery API does not receive even more
+ * traffic.
+ * <p>
+ * Every attempt is sent through a {@link Sender}, which applies the concurrency limit and circuit breaker to it.  The
+ * latency recorded for a request is always that of its first attempt, even when the hedge wins, so hedging does not
+ * pull the hedge delay down.
+ */
+class RequestHedger {
+
+    /**
+     * Sends the attempts of a hedged request.
+     */
+    interface Sender {
+
+        /**
+         * Sends an attempt.
+         * @param request The request to send
+         * @param hedge Whether the attempt is a hedge, which must only be sent if there is spare capacity
+         * @return A future completing with the response, or null if the hedge was not sent
+         */
+        CompletableFuture<HttpResponse> send(HttpUriRequest request, boolean hedge);
+    }
+
+    private static final int SAMPLE_COUNT = 1024;
+    private static final int MINIMUM_SAMPLES = 32;
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    //Hedge tokens are kept in thousandths, and at most this many whole tokens can be saved up for a burst
+    private static final long TOKEN = 1000;
+    private static final long MAXIMUM_TOKENS = 10 * TOKEN;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLE_COUNT);
+    private final AtomicLong recordedCount = new AtomicLong();
+    private volatile long hedgeDelayNanos = -1;
+    private volatile double computedPercentile = Double.NaN;
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final LongAdder hedgeCount = new LongAdder();
+
+    /**
+     * Sends the request, and a hedge once the hedge delay elapses without a response.
+     * @param sender The sender of the attempts
+     * @param request The idempotent request to send
+     * @param deliveryOptions The options holding the hedging settings
+     * @param scheduler The scheduler to time the hedge with
+     * @return A future completing with the first response, or exceptionally once all sent requests failed
+     */
+    CompletableFuture<HttpResponse> execute(
+            Sender sender,
+            HttpUriRequest request,
+            DeliveryOptions deliveryOptions,
+            ScheduledExecutorService scheduler) {
+        depositToken(deliveryOptions.getHedgeMaxFraction());
+        long delay = getHedgeDelayNanos(deliveryOptions);
+        long start = java.lang.System.nanoTime();
+        Race race = new Race(start);
+        race.enter(sender.send(request, false), true);
+        if (delay >= 0) {
+            try {
+                ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                    if (race.result.isDone() || !tryAcquireToken()) {
+                        return;
+                    }
+                    CompletableFuture<HttpResponse> hedge = sender.send(RequestBuilder.copy(request).build(), true);
+                    if (hedge == null) {
+                        //No spare capacity, give the token back
+                        tokens.addAndGet(TOKEN);
+                        return;
+                    }
+                    hedgeCount.increment();
+                    race.enter(hedge, false);
+                }, delay, TimeUnit.NANOSECONDS);
+                race.result.whenComplete((response, e) -> timer.cancel(false));
+            } catch (RejectedExecutionException e) {
+                //The client is closing, go without a hedge
+            }
+        }
+        return race.result;
+    }
+
+    /**
+     * Records the time it took to receive a response, feeding the hedge delay.
+     * @param latencyNanos The latency in nanoseconds
+     */
+    void recordLatency(long latencyNanos) {
+        long count = recordedCount.getAndIncrement();
+        latencies.set((int) (count % SAMPLE_COUNT), latencyNanos);
+        if ((count + 1) % RECOMPUTE_INTERVAL == 0) {
+            //Invalidates the cached delay, it is recomputed by the next request
+            computedPercentile = Double.NaN;
+        }
+    }
+
+    /**
+     * Gets the current hedge delay.
+     * @param deliveryOptions The options holding the hedging settings
+     * @return The delay in nanoseconds, or -1 if not enough latencies have been recorded yet
+     */
+    long getHedgeDelayNanos(DeliveryOptions deliveryOptions) {
+        long count = recordedCount.get();
+        if (count < MINIMUM_SAMPLES) {
+            return -1;
+        }
+        double percentile = deliveryOptions.getHedgePercentile();
+        if (percentile != computedPercentile) {
+            int size = (int) Math.min(count, SAMPLE_COUNT);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.min(size - 1, Math.max(0, Math.ceil(percentile * size) - 1));
+            hedgeDelayNanos = sorted[index];
+            computedPercentile = percentile;
+        }
+        return Math.max(hedgeDelayNanos, TimeUnit.MILLISECONDS.toNanos(deliveryOptions.getHedgeMinDelayMillis()));
+    }
+
+    long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    private void depositToken(double fraction) {
+        long deposit = (long) (fraction * TOKEN);
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= MAXIMUM_TOKENS) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(MAXIMUM_TOKENS, current + deposit)));
+    }
+
+    private boolean tryAcquireToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * Completes with the first response of the requests entered, and releases the responses arriving later.  A hedge
+     * which lost is cancelled, the first attempt is left to complete so its latency can be recorded.
+     */
+    private class Race {
+
+        final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final long start;
+        private volatile Throwable failure;
+
+        Race(long start) {
+            this.start = start;
+        }
+
+        void enter(CompletableFuture<HttpResponse> attempt, boolean first) {
+            pending.incrementAndGet();
+            result.whenComplete((response, e) -> {
+                if (!first || e != null) {
+                    attempt.cancel(false);
+                }
+            });
+            attempt.whenComplete((response, e) -> {
+                long latency = java.lang.System.nanoTime() - start;
+                if (e == null) {
+                    if (!result.complete(response)) {
+                        EntityUtils.consumeQuietly(response.getEntity());
+                    }
+                    if (first) {
+                        recordLatency(latency);
+                    }
+                } else {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    if (first && result.isDone() && !result.isCompletedExceptionally()) {
+                        //Failed after the hedge won, it took at least this long
+                        recordLatency(latency);
+                    }
+                }
+                if (pending.decrementAndGet() == 0 && !result.isDone()) {
+                    result.completeExceptionally(failure);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache of the final results of the {@link DeliveryClient}, after binding, rich text resolution and conversion to
+ * strongly typed models, keyed on the request URI and the requested class.
+ * <p>
+ * A cached result is tied to the response it was built from, as cached by the {@link CacheManager} of the client.  It
+ * is only served while the cache manager keeps serving that very response, so it is invalidated along with it: once
+ * the response expires and is replaced, or is evicted, the result is built again on the next request.  Without a
+ * cache manager, no result is ever cached.  The results of a client are also discarded when its resolvers or type
+ * mappings change.
+ * <p>
+ * Results are dropped as soon as the response they were built from is garbage collected.  When the cache is full, the
+ * least recently used of a small sample of results is evicted, so reads never take a lock and evictions take constant
+ * time.
+ * <p>
+ * Cache hits return the same instances to every caller, which must treat them as read-only.
+ * <pre>
+ * client.setCacheManager(new InMemoryCacheManager());
+ * client.setResultCache(new ResultCache(10000));
+ * </pre>
+ */
+public class ResultCache {
+
+    static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final ConcurrentHashMap<Key, Entry> data = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collectedSources = new ReferenceQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maximumSize;
+
+    //Sweeps the entries round robin, so every entry is sampled in turn; guarded by the eviction lock
+    private Iterator<Entry> evictionHand = Collections.emptyIterator();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Constructs a cache holding up to 10000 results.
+     */
+    public ResultCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructs a cache holding up to the given number of results.
+     * @param maximumSize The maximum number of results
+     */
+    public ResultCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive.");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void invalidateAll() {
+        data.clear();
+    }
+
+    /**
+     * Gets the number of requests served a cached result.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of requests whose result had to be built.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of cached results, including results whose response is no longer cached.
+     * @return the number of entries
+     */
+    public long getSize() {
+        return data.size();
+    }
+
+    /**
+     * Returns the result cached for the request URI and class, if it was built from the given response.
+     * @param source The identity of the response body, see {@link CachedResponse#getSource()}
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String requestUri, Class<?> resultClass, Object source) {
+        Entry entry = data.get(new Key(requestUri, resultClass));
+        if (entry == null || entry.get() != source) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        entry.accessTime = java.lang.System.nanoTime();
+        return (T) entry.result;
+    }
+
+    void put(String requestUri, Class<?> resultClass, Object source, Object result) {
+        Key key = new Key(requestUri, resultClass);
+        data.put(key, new Entry(key, source, result, collectedSources));
+        expungeCollected();
+        if (data.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    //Results of responses the cache manager let go of are useless
+    private void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collectedSources.poll()) != null) {
+            Entry entry = (Entry) reference;
+            data.remove(entry.key, entry);
+        }
+    }
+
+    private void evict() {
+        evictionLock.lock();
+        try {
+            //Checked under the lock, so concurrent puts do not evict more than needed
+            while (data.size() > maximumSize) {
+                Entry victim = null;
+                for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                    if (!evictionHand.hasNext()) {
+                        evictionHand = data.values().iterator();
+                        if (!evictionHand.hasNext()) {
+                            break;
+                        }
+                    }
+                    Entry candidate = evictionHand.next();
+                    if (victim == null || candidate.accessTime < victim.accessTime) {
+                        victim = candidate;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+                data.remove(victim.key, victim);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Key {
+        final String requestUri;
+        final Class<?> resultClass;
+
+        Key(String requestUri, Class<?> resultClass) {
+            this.requestUri = requestUri;
+            this.resultClass = resultClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return resultClass == key.resultClass && requestUri.equals(key.requestUri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(requestUri, resultClass);
+        }
+    }
+
+    //Refers to the source weakly, so the cached result does not keep an evicted response alive
+    private static final class Entry extends WeakReference<Object> {
+        final Key key;
+        final Object result;
+        volatile long accessTime = java.lang.System.nanoTime();
+
+        Entry(Key key, Object source, Object result, ReferenceQueue<Object> queue) {
+            super(source, queue);
+            this.key = key;
+            this.result = result;
+        }
+    }
+}
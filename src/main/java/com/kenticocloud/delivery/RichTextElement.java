@@ -102,4 +102,20 @@ public class RichTextElement extends TextElement {
     public void setModularContent(List<String> modularContent) {
         this.modularContent = modularContent;
     }
+
+    /**
+     * Returns a copy of this element with another value, leaving this element untouched.
+     */
+    RichTextElement withValue(String value) {
+        RichTextElement copy = new RichTextElement();
+        copy.type = type;
+        copy.name = name;
+        copy.codeName = codeName;
+        copy.parent = parent;
+        copy.images = images;
+        copy.links = links;
+        copy.modularContent = modularContent;
+        copy.value = value;
+        return copy;
+    }
 }
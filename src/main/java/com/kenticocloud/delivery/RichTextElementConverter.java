@@ -30,6 +30,8 @@ import com.kenticocloud.delivery.template.TemplateEngineModel;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -120,34 +122,46 @@ public class RichTextElementConverter {
         }
     }
 
+    /**
+     * Resolves the rich text elements of a content item, replacing them in the item with resolved copies.  The
+     * replaced elements are left untouched.
+     * @param orig The content item to resolve the rich text elements of
+     */
     public void process(ContentItem orig) {
-        for (Map.Entry<String, Element> entry : orig.getElements().entrySet()) {
+        Map<String, Element> elements = new LinkedHashMap<>(orig.getElements());
+        boolean resolved = false;
+        for (Map.Entry<String, Element> entry : elements.entrySet()) {
             Element element = entry.getValue();
             if (element instanceof RichTextElement) {
-                RichTextElement richTextElement = (RichTextElement) element;
-                richTextElement.setValue(resolveLinks(richTextElement));
-                richTextElement.setValue(resolveModularContent(richTextElement));
-                if (richTextElementResolver != null) {
-                    richTextElement.setValue(richTextElementResolver.resolve(richTextElement.getValue()));
-                }
+                entry.setValue(convert((RichTextElement) element));
+                resolved = true;
             }
         }
+        if (resolved) {
+            orig.setElements(elements);
+        }
     }
 
+    /**
+     * Returns a copy of a rich text element with its links, inline content items and custom resolutions resolved.
+     * The original element is left untouched, so it can be shared while being resolved.
+     * @param orig The rich text element to resolve
+     * @return The resolved copy, or the original element if it has no value
+     */
     public RichTextElement convert(RichTextElement orig) {
         if (orig.getValue() == null) {
             return orig;
         }
-        orig.setValue(resolveLinks(orig));
-        orig.setValue(resolveModularContent(orig));
+        RichTextElement resolved = orig.withValue(resolveLinks(orig));
+        resolved = resolved.withValue(resolveModularContent(resolved));
         if (richTextElementResolver != null) {
-            orig.setValue(richTextElementResolver.resolve(orig.getValue()));
+            resolved = resolved.withValue(richTextElementResolver.resolve(resolved.getValue()));
         }
-        return orig;
+        return resolved;
     }
 
     private String resolveLinks(RichTextElement element) {
-        if (element.links == null) {
+        if (element.links == null || element.getValue() == null) {
             return element.getValue();
         }
         Matcher matcher = linkPattern.matcher(element.getValue());
@@ -210,12 +224,18 @@ public class RichTextElementConverter {
 
     private InternalInlineContentItemResolver resolveMatch(RichTextElement element, ContentItem modularContent) {
         if (modularContent != null) {
-            for (Element modularContentElement: modularContent.getElements().values()) {
-                if (modularContentElement instanceof RichTextElement) {
-                    RichTextElement embeddedRichTextElement = (RichTextElement) modularContentElement;
-                    embeddedRichTextElement.setValue(resolveLinks(embeddedRichTextElement));
+            //Resolve the links of a copy, the modular content item may be embedded elsewhere too
+            Map<String, Element> resolvedElements = new HashMap<>();
+            for (Map.Entry<String, Element> entry : modularContent.getElements().entrySet()) {
+                if (entry.getValue() instanceof RichTextElement) {
+                    RichTextElement embeddedRichTextElement = (RichTextElement) entry.getValue();
+                    resolvedElements.put(
+                            entry.getKey(), embeddedRichTextElement.withValue(resolveLinks(embeddedRichTextElement)));
                 }
             }
+            if (!resolvedElements.isEmpty()) {
+                modularContent = modularContent.withElements(resolvedElements);
+            }
             InlineContentItemsResolver resolverForType =
                     stronglyTypedContentItemConverter.getResolverForType(modularContent);
             if (resolverForType != null) {
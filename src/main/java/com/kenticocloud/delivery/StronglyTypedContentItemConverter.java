@@ -25,24 +25,39 @@
 package com.kenticocloud.delivery;
 
 import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
-import org.apache.commons.beanutils.BeanUtils;
-import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.ConstructorUtils;
-import org.apache.commons.beanutils.PropertyUtilsBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 public class StronglyTypedContentItemConverter {
 
+    //Smaller listings are converted on the calling thread, as handing them off costs more than it saves
+    static final int PARALLEL_CONVERSION_THRESHOLD = 64;
+    private static final int MIN_CONVERSION_CHUNK_SIZE = 16;
+
     private static final Logger logger = LoggerFactory.getLogger(StronglyTypedContentItemConverter.class);
 
-    private HashMap<String, Class<?>> contentTypeToClassMapping = new HashMap<>();
-    private HashMap<Class<?>, String> classToContentTypeMapping = new HashMap<>();
-    private HashMap<Type, InlineContentItemsResolver> typeToInlineResolverMapping = new HashMap<>();
+    //Concurrent, as types may be registered while other threads convert shared responses
+    private ConcurrentHashMap<String, Class<?>> contentTypeToClassMapping = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Class<?>, String> classToContentTypeMapping = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Type, InlineContentItemsResolver> typeToInlineResolverMapping =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, MappingPlan> mappingPlans = new ConcurrentHashMap<>();
+    private volatile boolean lazyModularContent;
+    private volatile Executor conversionExecutor;
+    //Mappers generated by ContentItemMappingProcessor, loaded on first use
+    private volatile Map<Class<?>, ContentItemMapper<?>> generatedMappers;
 
     protected StronglyTypedContentItemConverter() {
         //protected constructor
@@ -100,6 +115,63 @@ public class StronglyTypedContentItemConverter {
         }).scan();
     }
 
+    protected void setLazyModularContent(boolean lazyModularContent) {
+        this.lazyModularContent = lazyModularContent;
+    }
+
+    protected boolean isLazyModularContent() {
+        return lazyModularContent;
+    }
+
+    protected void setConversionExecutor(Executor conversionExecutor) {
+        this.conversionExecutor = conversionExecutor;
+    }
+
+    protected Executor getConversionExecutor() {
+        return conversionExecutor;
+    }
+
+    protected void registerGeneratedMappers() {
+        for (ContentItemMapper<?> mapper : getGeneratedMappers().values()) {
+            registerType(mapper.getContentType(), mapper.getMappedClass());
+        }
+    }
+
+    private Map<Class<?>, ContentItemMapper<?>> getGeneratedMappers() {
+        Map<Class<?>, ContentItemMapper<?>> mappers = generatedMappers;
+        if (mappers == null) {
+            mappers = new HashMap<>();
+            Iterator<ContentItemMapper<?>> iterator = loadGeneratedMappers();
+            while (hasNextMapper(iterator)) {
+                try {
+                    ContentItemMapper<?> mapper = iterator.next();
+                    mappers.put(mapper.getMappedClass(), mapper);
+                } catch (ServiceConfigurationError e) {
+                    //A stale entry, for instance of a class which was since removed, the class is mapped reflectively
+                    logger.warn("Failed to load a generated ContentItemMapper", e);
+                }
+            }
+            generatedMappers = mappers;
+        }
+        return mappers;
+    }
+
+    //The service type can only be given as a raw class literal, but every service loaded maps some class
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Iterator<ContentItemMapper<?>> loadGeneratedMappers() {
+        Iterator iterator = ServiceLoader.load(ContentItemMapper.class).iterator();
+        return iterator;
+    }
+
+    private static boolean hasNextMapper(Iterator<ContentItemMapper<?>> iterator) {
+        try {
+            return iterator.hasNext();
+        } catch (ServiceConfigurationError e) {
+            logger.warn("Failed to read the generated ContentItemMapper index", e);
+            return false;
+        }
+    }
+
     Object convert(ContentItem item, Map<String, ContentItem> modularContent, String contentType) {
         Class<?> mappingClass = contentTypeToClassMapping.get(contentType);
         if (mappingClass == null) {
@@ -109,29 +181,101 @@ public class StronglyTypedContentItemConverter {
     }
 
     <T> T convert(ContentItem item, Map<String, ContentItem> modularContent, Class<T> tClass) {
+        return convert(item, new ConversionContext(modularContent), tClass);
+    }
+
+    //Converts the items of a response, converting each modular content item at most once per class and chunk
+    <T> List<T> convert(List<ContentItem> items, Map<String, ContentItem> modularContent, Class<T> tClass) {
+        Executor executor = conversionExecutor;
+        if (executor == null || items.size() < PARALLEL_CONVERSION_THRESHOLD) {
+            return convert(items, modularContent, tClass, 0, items.size());
+        }
+        int parallelism = executor instanceof ForkJoinPool ?
+                ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        //A few chunks per thread even out chunks which take longer to convert than others
+        int chunkSize = Math.max(MIN_CONVERSION_CHUNK_SIZE, (items.size() + parallelism * 4 - 1) / (parallelism * 4));
+        int chunkCount = (items.size() + chunkSize - 1) / chunkSize;
+        List<CompletableFuture<List<T>>> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new CompletableFuture<>());
+        }
+        //Chunks are claimed in order by whichever thread gets to them first, so the calling thread converts every
+        //chunk no worker has started and only waits for chunks already being converted. This keeps a call made
+        //from a thread of the executor itself from waiting on work queued behind it.
+        AtomicInteger nextChunk = new AtomicInteger();
+        Runnable worker = () -> convertChunks(items, modularContent, tClass, chunkSize, chunks, nextChunk);
+        for (int i = 1; i < chunkCount; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        convertChunks(items, modularContent, tClass, chunkSize, chunks, nextChunk);
+        List<T> tItems = new ArrayList<>(items.size());
+        for (CompletableFuture<List<T>> chunk : chunks) {
+            try {
+                tItems.addAll(chunk.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return tItems;
+    }
+
+    private <T> void convertChunks(List<ContentItem> items, Map<String, ContentItem> modularContent, Class<T> tClass,
+                                   int chunkSize, List<CompletableFuture<List<T>>> chunks, AtomicInteger nextChunk) {
+        int chunk;
+        while ((chunk = nextChunk.getAndIncrement()) < chunks.size()) {
+            int from = chunk * chunkSize;
+            try {
+                chunks.get(chunk).complete(
+                        convert(items, modularContent, tClass, from, Math.min(items.size(), from + chunkSize)));
+            } catch (Throwable t) {
+                chunks.get(chunk).completeExceptionally(t);
+            }
+        }
+    }
+
+    private <T> List<T> convert(
+            List<ContentItem> items, Map<String, ContentItem> modularContent, Class<T> tClass, int from, int to) {
+        ConversionContext context = new ConversionContext(modularContent);
+        ArrayList<T> tItems = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            tItems.add(convert(items.get(i), context, tClass));
+        }
+        return tItems;
+    }
+
+    private <T> T convert(ContentItem item, ConversionContext context, Class<T> tClass) {
         if (tClass == Object.class) {
             Class<?> mappingClass = contentTypeToClassMapping.get(item.getSystem().getType());
             if (mappingClass == null) {
                 return (T) item;
             }
-            return (T) convert(item, modularContent, mappingClass);
+            return (T) convert(item, context, mappingClass);
         }
         if (tClass == ContentItem.class) {
             return (T) item;
         }
         T bean = null;
         try {
-            //Invoke the default constructor
-            bean = ConstructorUtils.invokeConstructor(tClass, null);
-
-            //Get the bean properties
-            Field[] fields = tClass.getDeclaredFields();
+            //The reflection is done once per class, when its mapping plan is built
+            MappingPlan mappingPlan = mappingPlans.computeIfAbsent(
+                    tClass, type -> MappingPlan.of(type, getGeneratedMappers().get(type)));
+            bean = tClass.cast(mappingPlan.newInstance());
 
             //Inject mappings
-            for (Field field : fields) {
-                Object value = getValueForField(item, modularContent, bean, field);
+            for (MappingPlan.FieldBinding binding : mappingPlan.getBindings()) {
+                Object value = getValueForField(item, context, binding);
                 if (value != null) {
-                    BeanUtils.setProperty(bean, field.getName(), value);
+                    binding.set(bean, value);
                 }
             }
         } catch (NoSuchMethodException |
@@ -144,75 +288,102 @@ public class StronglyTypedContentItemConverter {
         return bean;
     }
 
+    //Converts a modular content item nested in the item being converted, hiding it from its own descendants
+    private Object convertNested(ContentItem item, String codename, ConversionContext context, Class<?> clazz) {
+        Map<Class<?>, Object> convertedItems = context.converted.get(item);
+        if (convertedItems != null && convertedItems.containsKey(clazz)) {
+            return convertedItems.get(clazz);
+        }
+        int cuts = context.cuts;
+        context.path.add(codename);
+        Object converted;
+        try {
+            converted = convert(item, context, clazz);
+        } finally {
+            context.path.remove(codename);
+        }
+        if (context.cuts == cuts) {
+            //No cycle was cut below this item, so it converts the same wherever it is referenced from
+            context.converted.computeIfAbsent(item, key -> new HashMap<>()).put(clazz, converted);
+        }
+        return converted;
+    }
+
     private Object getValueForField(
-            ContentItem item, Map<String, ContentItem> modularContent, Object bean, Field field) {
+            ContentItem item, ConversionContext context, MappingPlan.FieldBinding binding) {
         //Inject System object
-        if (field.getType() == System.class) {
+        if (binding.type == System.class) {
             return item.getSystem();
         }
         //Explicit checks
         //Check to see if this is an explicitly mapped Element
-        ElementMapping elementMapping = field.getAnnotation(ElementMapping.class);
-        if (elementMapping != null && item.getElements().containsKey(elementMapping.value())) {
-            return item.getElements().get(elementMapping.value()).getValue();
+        String elementCodename = binding.elementCodename;
+        if (elementCodename != null && item.getElements().containsKey(elementCodename)) {
+            return item.getElements().get(elementCodename).getValue();
         }
         //Check to see if this is an explicitly mapped ContentItem
-        ContentItemMapping contentItemMapping = field.getAnnotation(ContentItemMapping.class);
-        if (contentItemMapping != null && modularContent.containsKey(contentItemMapping.value())) {
-            return getCastedModularContentForField(field.getType(), contentItemMapping.value(), modularContent);
-        }
-        if (contentItemMapping != null &&
-                isListOrMap(field.getType()) &&
-                item.getElements().containsKey(contentItemMapping.value()) &&
-                item.getElements().get(contentItemMapping.value()) instanceof ModularContentElement) {
+        String contentItemCodename = binding.contentItemCodename;
+        if (contentItemCodename != null && context.containsKey(contentItemCodename)) {
+            return getCastedModularContentForField(binding, contentItemCodename, context);
+        }
+        if (contentItemCodename != null &&
+                binding.listOrMap &&
+                item.getElements().containsKey(contentItemCodename) &&
+                item.getElements().get(contentItemCodename) instanceof ModularContentElement) {
             ModularContentElement modularContentElement =
-                    (ModularContentElement) item.getElements().get(contentItemMapping.value());
+                    (ModularContentElement) item.getElements().get(contentItemCodename);
             Map<String, ContentItem> referencedModularContent = new HashMap<>();
             for (String codename : modularContentElement.getValue()) {
-                referencedModularContent.put(codename, modularContent.get(codename));
+                referencedModularContent.put(codename, context.get(codename));
             }
-            return getCastedModularContentForListOrMap(bean, field, referencedModularContent);
+            return getCastedModularContentForListOrMap(binding, referencedModularContent, context, false);
         }
 
         //Implicit checks
-        String candidateCodename = fromCamelCase(field.getName());
+        String candidateCodename = binding.candidateCodename;
         //Check to see if this is an implicitly mapped Element
         if (item.getElements().containsKey(candidateCodename)) {
             return item.getElements().get(candidateCodename).getValue();
         }
         //Check to see if this is an implicitly mapped ContentItem
-        if (modularContent.containsKey(candidateCodename)) {
-            return getCastedModularContentForField(field.getType(), candidateCodename, modularContent);
+        if (context.containsKey(candidateCodename)) {
+            return getCastedModularContentForField(binding, candidateCodename, context);
         }
 
         //Check to see if this is a collection of implicitly mapped ContentItem
-        if (isListOrMap(field.getType())) {
-            return getCastedModularContentForListOrMap(bean, field, modularContent);
+        if (binding.listOrMap) {
+            return getCastedModularContentForListOrMap(binding, context.modularContent, context, true);
         }
         return null;
     }
 
     private Object getCastedModularContentForField(
-            Class<?> clazz, String codename, Map<String, ContentItem> modularContent) {
-        ContentItem modularContentItem = modularContent.get(codename);
+            MappingPlan.FieldBinding binding, String codename, ConversionContext context) {
+        ContentItem modularContentItem = context.get(codename);
+        if (binding.supplier) {
+            Class<?> valueClass = binding.valueType instanceof Class ? (Class<?>) binding.valueType : Object.class;
+            return LazyModularContent.supplier(codename, modularContentItem, lazyConverter(context, valueClass));
+        }
+        Class<?> clazz = binding.type;
         if (clazz == ContentItem.class) {
             return modularContentItem;
         }
-        Map<String, ContentItem> modularContentForRecursion =
-                copyModularContentWithExclusion(modularContent, codename);
-        return convert(modularContentItem, modularContentForRecursion, clazz);
+        return convertNested(modularContentItem, codename, context, clazz);
     }
 
     private Object getCastedModularContentForListOrMap(
-            Object bean, Field field, Map<String, ContentItem> modularContent) {
-        Type type = getType(bean, field);
+            MappingPlan.FieldBinding binding,
+            Map<String, ContentItem> modularContent,
+            ConversionContext context,
+            boolean implicit) {
+        Type type = binding.valueType;
         if (type == null) {
             //We have failed to get the type, probably due to a missing setter, skip this field
-            logger.debug("Failed to get type from {} (probably due to a missing setter), {} skipped", bean, field);
+            logger.debug("Failed to get type of {} (probably due to a missing setter), skipped", binding);
             return null;
         }
         if (type == ContentItem.class) {
-            return castCollection(field.getType(), modularContent);
+            return castCollection(binding.type, implicit ? context.getVisible() : modularContent);
         }
         Class<?> listClass = (Class<?>) type;
         String contentType = null;
@@ -224,27 +395,49 @@ public class StronglyTypedContentItemConverter {
             contentType = classToContentTypeMapping.get(listClass);
         }
         if (contentType != null) {
-            HashMap convertedModularContent = new HashMap<>();
+            HashMap<String, ContentItem> matchingModularContent = new HashMap<>();
             for (Map.Entry<String, ContentItem> entry : modularContent.entrySet()) {
                 if (entry.getValue() != null && contentType.equals(entry.getValue().getSystem().getType())) {
-                    Map<String, ContentItem> modularContentForRecursion =
-                            copyModularContentWithExclusion(modularContent, entry.getKey());
-                    convertedModularContent.put(entry.getKey(),
-                            convert(entry.getValue(), modularContentForRecursion, listClass));
+                    if (implicit && context.path.contains(entry.getKey())) {
+                        context.cuts++;
+                        continue;
+                    }
+                    matchingModularContent.put(entry.getKey(), entry.getValue());
                 }
             }
-            return castCollection(field.getType(), convertedModularContent);
+            if (lazyModularContent && binding.type == List.class) {
+                return LazyModularContent.list(matchingModularContent, lazyConverter(context, listClass));
+            }
+            if (lazyModularContent && binding.type == Map.class) {
+                return LazyModularContent.map(matchingModularContent, lazyConverter(context, listClass));
+            }
+            HashMap convertedModularContent = new HashMap<>();
+            for (Map.Entry<String, ContentItem> entry : matchingModularContent.entrySet()) {
+                convertedModularContent.put(entry.getKey(),
+                        convertNested(entry.getValue(), entry.getKey(), context, listClass));
+            }
+            return castCollection(binding.type, convertedModularContent);
         }
         return null;
     }
 
-    private static String fromCamelCase(String s) {
-        String regex = "([a-z])([A-Z]+)";
-        String replacement = "$1_$2";
-        return s.replaceAll(regex, replacement).toLowerCase();
+    //Converts items later, hiding the items on the recursion stack as it is now
+    private BiFunction<String, ContentItem, Object> lazyConverter(ConversionContext context, Class<?> clazz) {
+        Map<String, ContentItem> modularContent = context.modularContent;
+        Set<String> path = new HashSet<>(context.path);
+        if (!path.isEmpty()) {
+            //What the items convert to depends on the path, so the item being converted does too
+            context.cuts++;
+        }
+        return (codename, item) -> convertNested(item, codename, new ConversionContext(modularContent, path), clazz);
     }
 
-    //This function copies the modular content map while excluding an item, useful for a recursive stack
+    /**
+     * This function copies the modular content map while excluding an item, useful for a recursive stack.
+     * @deprecated The converter no longer copies the modular content for every nested item, it hides the items on
+     * the recursion stack instead
+     */
+    @Deprecated
     protected Map<String, ContentItem> copyModularContentWithExclusion(
             Map<String, ContentItem> orig, String excludedContentItem) {
         HashMap<String, ContentItem> target = new HashMap<>();
@@ -256,8 +449,53 @@ public class StronglyTypedContentItemConverter {
         return target;
     }
 
-    private static boolean isListOrMap(Class<?> type) {
-        return List.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    /**
+     * The state of the conversion of a response.  Modular content items being converted are hidden from the items
+     * nested in them, which breaks reference cycles, and items converted without hitting a hidden one are kept so that
+     * each is converted once per class, however many items reference it.
+     */
+    private static final class ConversionContext {
+
+        private final Map<String, ContentItem> modularContent;
+        //The codenames of the modular content items on the recursion stack
+        private final Set<String> path;
+        private final Map<ContentItem, Map<Class<?>, Object>> converted = new IdentityHashMap<>();
+        //How many times a hidden item was asked for
+        private int cuts;
+
+        private ConversionContext(Map<String, ContentItem> modularContent) {
+            this(modularContent, Collections.emptySet());
+        }
+
+        private ConversionContext(Map<String, ContentItem> modularContent, Set<String> path) {
+            this.modularContent = modularContent;
+            this.path = new HashSet<>(path);
+        }
+
+        private boolean containsKey(String codename) {
+            if (!modularContent.containsKey(codename)) {
+                return false;
+            }
+            if (path.contains(codename)) {
+                cuts++;
+                return false;
+            }
+            return true;
+        }
+
+        private ContentItem get(String codename) {
+            return containsKey(codename) ? modularContent.get(codename) : null;
+        }
+
+        private Map<String, ContentItem> getVisible() {
+            if (path.isEmpty()) {
+                return modularContent;
+            }
+            cuts++;
+            Map<String, ContentItem> visible = new LinkedHashMap<>(modularContent);
+            visible.keySet().removeAll(path);
+            return visible;
+        }
     }
 
     private static Object castCollection(Class<?> type, Map<String, ?> items) {
@@ -270,37 +508,6 @@ public class StronglyTypedContentItemConverter {
         return items;
     }
 
-    private static Type getType(Object bean, Field field) {
-        //Because of type erasure, we will find the setter method and get the generic types off it's arguments
-        PropertyUtilsBean propertyUtils = BeanUtilsBean.getInstance().getPropertyUtils();
-        PropertyDescriptor propertyDescriptor = null;
-        try {
-            propertyDescriptor = propertyUtils.getPropertyDescriptor(bean, field.getName());
-        } catch (IllegalAccessException |
-                InvocationTargetException |
-                NoSuchMethodException e) {
-            handleReflectionException(e);
-        }
-        if (propertyDescriptor == null) {
-            //Likely no accessors
-            logger.debug("Property descriptor for object {} with field {} is null", bean, field);
-            return null;
-        }
-        Method writeMethod = propertyUtils.getWriteMethod(propertyDescriptor);
-        if (writeMethod == null) {
-            logger.debug("No write method for property {}", propertyDescriptor);
-            return null;
-        }
-        Type[] actualTypeArguments = ((ParameterizedType) writeMethod.getGenericParameterTypes()[0]).getActualTypeArguments();
-
-        Type type = (Map.class.isAssignableFrom(field.getType())) ? actualTypeArguments[1] : actualTypeArguments[0];
-
-        logger.debug("Got type {} from object {}, field {}", type, bean, field);
-
-        return type;
-
-    }
-
     private static void handleReflectionException(Exception ex) {
         logger.error("Reflection exception", ex);
         if (ex instanceof NoSuchMethodException) {
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The on-disk format shared by {@link RecordingHttpTransport} and {@link ReplayHttpTransport}: a gzipped stream of
+ * exchanges, each holding the request URI, when the request started relative to the start of the recording, how long it took, and
+ * either the response status, headers and raw body, or the error the request failed with.
+ */
+final class TrafficArchive {
+
+    private static final int MAGIC = 0x4B435241;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte RESPONSE = 1;
+    private static final byte FAILURE = 2;
+
+    private TrafficArchive() {
+        //Static helpers only
+    }
+
+    static List<Exchange> read(Path path) throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a traffic archive", path));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported traffic archive version %d", version));
+            }
+            for (byte tag = readTag(in); tag != END; tag = readTag(in)) {
+                long startOffsetNanos = in.readLong();
+                long latencyNanos = in.readLong();
+                String requestUri = in.readUTF();
+                if (tag == FAILURE) {
+                    exchanges.add(new Exchange(requestUri, startOffsetNanos, latencyNanos, in.readUTF()));
+                    continue;
+                }
+                int statusCode = in.readInt();
+                String reasonPhrase = in.readUTF();
+                Header[] headers = new Header[in.readInt()];
+                for (int i = 0; i < headers.length; i++) {
+                    headers[i] = new BasicHeader(in.readUTF(), in.readUTF());
+                }
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                exchanges.add(new Exchange(
+                        requestUri, startOffsetNanos, latencyNanos, statusCode, reasonPhrase, headers, body));
+            }
+        }
+        return exchanges;
+    }
+
+    //Archives cut short by a crash end without an END tag, keep what was recorded
+    private static byte readTag(DataInputStream in) throws IOException {
+        try {
+            return in.readByte();
+        } catch (EOFException e) {
+            return END;
+        }
+    }
+
+    static class Exchange {
+
+        final String requestUri;
+        final long startOffsetNanos;
+        final long latencyNanos;
+        final int statusCode;
+        final String reasonPhrase;
+        final Header[] headers;
+        final byte[] body;
+        final String failure;
+
+        Exchange(String requestUri, long startOffsetNanos, long latencyNanos,
+                 int statusCode, String reasonPhrase, Header[] headers, byte[] body) {
+            this.requestUri = requestUri;
+            this.startOffsetNanos = startOffsetNanos;
+            this.latencyNanos = latencyNanos;
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = headers;
+            this.body = body;
+            this.failure = null;
+        }
+
+        Exchange(String requestUri, long startOffsetNanos, long latencyNanos, String failure) {
+            this.requestUri = requestUri;
+            this.startOffsetNanos = startOffsetNanos;
+            this.latencyNanos = latencyNanos;
+            this.statusCode = 0;
+            this.reasonPhrase = null;
+            this.headers = null;
+            this.body = null;
+            this.failure = failure;
+        }
+    }
+
+    static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        Writer(Path path) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        synchronized void write(Exchange exchange) throws IOException {
+            out.writeByte(exchange.failure == null ? RESPONSE : FAILURE);
+            out.writeLong(exchange.startOffsetNanos);
+            out.writeLong(exchange.latencyNanos);
+            out.writeUTF(exchange.requestUri);
+            if (exchange.failure != null) {
+                out.writeUTF(exchange.failure);
+                return;
+            }
+            out.writeInt(exchange.statusCode);
+            out.writeUTF(exchange.reasonPhrase == null ? "" : exchange.reasonPhrase);
+            out.writeInt(exchange.headers.length);
+            for (Header header : exchange.headers) {
+                out.writeUTF(header.getName());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(exchange.body.length);
+            out.write(exchange.body);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.writeByte(END);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        long openDuration = TimeUnit.HOURS.toNanos(1);
+        circuitBreaker.recordFailure(2);
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure(2);
+        Assert.assertEquals(CircuitBreaker.Permit.GRANTED, circuitBreaker.acquire(openDuration));
+        circuitBreaker.recordFailure(2);
+        Assert.assertTrue(circuitBreaker.isOpen());
+        Assert.assertEquals(CircuitBreaker.Permit.DENIED, circuitBreaker.acquire(openDuration));
+    }
+
+    @Test
+    public void testSingleProbeClosesBreaker() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.recordFailure(1);
+        Assert.assertEquals(CircuitBreaker.Permit.PROBE, circuitBreaker.acquire(0));
+        //Only one probe is let through while half-open
+        Assert.assertEquals(CircuitBreaker.Permit.DENIED, circuitBreaker.acquire(0));
+        circuitBreaker.recordSuccess();
+        Assert.assertFalse(circuitBreaker.isOpen());
+        Assert.assertEquals(CircuitBreaker.Permit.GRANTED, circuitBreaker.acquire(0));
+    }
+
+    @Test
+    public void testReleasedProbeReopensBreaker() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.recordFailure(1);
+        CircuitBreaker.Permit probe = circuitBreaker.acquire(0);
+        Assert.assertEquals(CircuitBreaker.Permit.PROBE, probe);
+        //Releasing a permit which is not the probe leaves the probe in flight
+        circuitBreaker.release(CircuitBreaker.Permit.GRANTED);
+        Assert.assertEquals(CircuitBreaker.Permit.DENIED, circuitBreaker.acquire(0));
+        circuitBreaker.release(probe);
+        Assert.assertTrue(circuitBreaker.isOpen());
+        Assert.assertEquals(CircuitBreaker.Permit.DENIED, circuitBreaker.acquire(TimeUnit.HOURS.toNanos(1)));
+        Assert.assertEquals(CircuitBreaker.Permit.PROBE, circuitBreaker.acquire(0));
+    }
+
+    @Test
+    public void testDisabledBreakerNeverOpens() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.recordFailure(0);
+        }
+        Assert.assertFalse(circuitBreaker.isOpen());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingCacheManagerTest {
+
+    @Test
+    public void testConcurrentRequestsShareOneExecution() throws Exception {
+        CoalescingCacheManager cacheManager = new CoalescingCacheManager();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        HttpRequestExecutor executor = () -> {
+            executions.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return JsonNodeFactory.instance.textNode("response");
+        };
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JsonNode>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(threads.submit(() -> cacheManager.resolveRequest("https://example.com/items", executor)));
+            }
+            //Let every thread join the in-flight request before it completes
+            while (executions.get() == 0) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(100);
+            release.countDown();
+            JsonNode first = results.get(0).get();
+            for (Future<JsonNode> result : results) {
+                Assert.assertSame(first, result.get());
+            }
+            Assert.assertEquals(1, executions.get());
+            Assert.assertEquals(7, cacheManager.getCoalescedCount());
+            Assert.assertEquals(0, cacheManager.getInFlightCount());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOnlyTheLeaderStores() throws Exception {
+        AtomicInteger stores = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CoalescingCacheManager cacheManager = new CoalescingCacheManager(new CacheManager() {
+            @Override
+            public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+                JsonNode response = executor.execute();
+                stores.incrementAndGet();
+                return response;
+            }
+
+            @Override
+            public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+                return executor.executeAsync().thenApply(response -> {
+                    stores.incrementAndGet();
+                    return response;
+                });
+            }
+        });
+        HttpRequestExecutor executor = () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return JsonNodeFactory.instance.textNode("response");
+        };
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JsonNode>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(threads.submit(() -> cacheManager.resolveRequest("https://example.com/items", executor)));
+            }
+            while (cacheManager.getCoalescedCount() < 3) {
+                Thread.sleep(5);
+            }
+            CompletableFuture<JsonNode> async = cacheManager.resolveRequestAsync("https://example.com/items", executor);
+            release.countDown();
+            for (Future<JsonNode> result : results) {
+                Assert.assertEquals("response", result.get().textValue());
+            }
+            Assert.assertEquals("response", async.get().textValue());
+            Assert.assertEquals(1, stores.get());
+            Assert.assertEquals(4, cacheManager.getCoalescedCount());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCoalescesThroughCachesWrappingExceptions() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CoalescingCacheManager cacheManager = new CoalescingCacheManager(new CacheManager() {
+            @Override
+            public JsonNode resolveRequest(String requestUri, HttpRequestExecutor executor) throws IOException {
+                try {
+                    return executor.execute();
+                } catch (RuntimeException e) {
+                    throw new IOException("Request failed", e);
+                }
+            }
+
+            @Override
+            public CompletableFuture<JsonNode> resolveRequestAsync(String requestUri, HttpRequestExecutor executor) {
+                CompletableFuture<JsonNode> future = new CompletableFuture<>();
+                executor.executeAsync().whenComplete((response, e) -> {
+                    if (e != null) {
+                        future.completeExceptionally(new IllegalStateException("Request failed", e));
+                    } else {
+                        future.complete(response);
+                    }
+                });
+                return future;
+            }
+        });
+        AtomicInteger executions = new AtomicInteger();
+        HttpRequestExecutor executor = () -> {
+            executions.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return JsonNodeFactory.instance.textNode("response");
+        };
+
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<JsonNode>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(threads.submit(() -> cacheManager.resolveRequest("https://example.com/items", executor)));
+            }
+            while (cacheManager.getCoalescedCount() < 2) {
+                Thread.sleep(5);
+            }
+            CompletableFuture<JsonNode> async = cacheManager.resolveRequestAsync("https://example.com/items", executor);
+            release.countDown();
+            for (Future<JsonNode> result : results) {
+                Assert.assertEquals("response", result.get().textValue());
+            }
+            Assert.assertEquals("response", async.get().textValue());
+            Assert.assertEquals(1, executions.get());
+            Assert.assertEquals(3, cacheManager.getCoalescedCount());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotCached() throws Exception {
+        CoalescingCacheManager cacheManager = new CoalescingCacheManager();
+        try {
+            cacheManager.resolveRequest("https://example.com/items", () -> {
+                throw new IOException("origin down");
+            });
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertEquals("origin down", e.getMessage());
+        }
+        JsonNode response = cacheManager.resolveRequest(
+                "https://example.com/items", () -> JsonNodeFactory.instance.textNode("recovered"));
+        Assert.assertEquals("recovered", response.textValue());
+    }
+
+    @Test
+    public void testAsyncRequestsShareOneExecution() throws Exception {
+        InMemoryCacheManager cache = new InMemoryCacheManager();
+        CoalescingCacheManager cacheManager = new CoalescingCacheManager(cache);
+        AtomicInteger executions = new AtomicInteger();
+        CompletableFuture<JsonNode> origin = new CompletableFuture<>();
+        HttpRequestExecutor executor = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() {
+                throw new AssertionError("Expected the asynchronous path");
+            }
+
+            @Override
+            public CompletableFuture<JsonNode> executeAsync() {
+                executions.incrementAndGet();
+                return origin;
+            }
+        };
+        CompletableFuture<JsonNode> first = cacheManager.resolveRequestAsync("https://example.com/items", executor);
+        CompletableFuture<JsonNode> second = cacheManager.resolveRequestAsync("https://example.com/items", executor);
+        second.cancel(false);
+        origin.complete(JsonNodeFactory.instance.textNode("response"));
+
+        Assert.assertEquals("response", first.get().textValue());
+        Assert.assertEquals(1, executions.get());
+        try {
+            second.get();
+            Assert.fail("Expected the cancelled future to stay cancelled");
+        } catch (CancellationException e) {
+            //expected
+        }
+        //Later requests are served from the wrapped cache
+        Assert.assertEquals("response", cacheManager.resolveRequestAsync("https://example.com/items", executor).get().textValue());
+        Assert.assertEquals(1, executions.get());
+    }
+}
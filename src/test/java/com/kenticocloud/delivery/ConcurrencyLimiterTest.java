@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrencyLimiterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() throws Exception {
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setInitialConcurrencyLimit(10);
+        deliveryOptions.setConcurrencyLimitLatencyMillis(100);
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(deliveryOptions);
+
+        //Fast requests using the whole limit raise it by about one per round
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.acquire("https://example.com/items");
+        }
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        }
+        Assert.assertEquals(10, concurrencyLimiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.acquire("https://example.com/items");
+        }
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        }
+        Assert.assertEquals(11, concurrencyLimiter.getLimit());
+
+        //Slow or failed requests cut it multiplicatively
+        concurrencyLimiter.acquire("https://example.com/items");
+        concurrencyLimiter.release(TimeUnit.MILLISECONDS.toNanos(500), false);
+        concurrencyLimiter.acquire("https://example.com/items");
+        concurrencyLimiter.release(TimeUnit.MILLISECONDS.toNanos(5), true);
+        Assert.assertEquals(9, concurrencyLimiter.getLimit());
+        Assert.assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    public void testExcessRequestsWaitThenFail() throws Exception {
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setInitialConcurrencyLimit(1);
+        deliveryOptions.setMaxConcurrencyLimit(1);
+        deliveryOptions.setConcurrencyLimitMaxWaitMillis(20);
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(deliveryOptions);
+        concurrencyLimiter.acquire("https://example.com/items");
+
+        try {
+            concurrencyLimiter.acquire("https://example.com/items");
+            Assert.fail("Expected ConcurrencyLimitExceededException");
+        } catch (ConcurrencyLimitExceededException e) {
+            Assert.assertEquals(1, concurrencyLimiter.getInFlight());
+        }
+
+        CompletableFuture<Void> waiting = concurrencyLimiter.acquireAsync("https://example.com/items", scheduler);
+        Assert.assertFalse(waiting.isDone());
+        concurrencyLimiter.release(0, false);
+        waiting.get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1, concurrencyLimiter.getInFlight());
+
+        try {
+            concurrencyLimiter.acquireAsync("https://example.com/items", scheduler).get(1, TimeUnit.SECONDS);
+            Assert.fail("Expected ConcurrencyLimitExceededException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ConcurrencyLimitExceededException);
+        }
+    }
+
+    @Test
+    public void testWaitersAreGrantedOutsideLockAndRemovedOnTimeout() throws Exception {
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setInitialConcurrencyLimit(1);
+        deliveryOptions.setMaxConcurrencyLimit(1);
+        deliveryOptions.setConcurrencyLimitMaxWaitMillis(20);
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(deliveryOptions);
+        Field lockField = ConcurrencyLimiter.class.getDeclaredField("lock");
+        lockField.setAccessible(true);
+        ReentrantLock lock = (ReentrantLock) lockField.get(concurrencyLimiter);
+        Field waitersField = ConcurrencyLimiter.class.getDeclaredField("waiters");
+        waitersField.setAccessible(true);
+        Collection<?> waiters = (Collection<?>) waitersField.get(concurrencyLimiter);
+        concurrencyLimiter.acquire("https://example.com/items");
+
+        try {
+            concurrencyLimiter.acquire("https://example.com/items");
+            Assert.fail("Expected ConcurrencyLimitExceededException");
+        } catch (ConcurrencyLimitExceededException e) {
+            Assert.assertTrue(waiters.isEmpty());
+        }
+
+        CompletableFuture<Boolean> lockedWhenGranted = concurrencyLimiter
+                .acquireAsync("https://example.com/items", scheduler)
+                .thenApply(ignored -> lock.isHeldByCurrentThread());
+        concurrencyLimiter.release(0, false);
+        Assert.assertFalse(lockedWhenGranted.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, concurrencyLimiter.getInFlight());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class ContentItemMappingProcessorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGeneratedMapper() throws Exception {
+        File sources = temporaryFolder.newFolder("sources");
+        File classes = temporaryFolder.newFolder("classes");
+        File sourceFile = new File(sources, "Article.java");
+        Files.write(sourceFile.toPath(), Arrays.asList(
+                "package sample;",
+                "import com.kenticocloud.delivery.*;",
+                "import com.kenticocloud.delivery.System;",
+                "import java.util.List;",
+                "@ContentItemMapping(\"article\")",
+                "public class Article {",
+                "    System system;",
+                "    @ElementMapping(\"title\")",
+                "    String headline;",
+                "    int rank;",
+                "    List<ContentItem> related;",
+                "    String readOnly;",
+                "    public void setSystem(System system) { this.system = system; }",
+                "    public System getSystem() { return system; }",
+                "    public void setHeadline(String headline) { this.headline = headline; }",
+                "    public String getHeadline() { return headline; }",
+                "    public void setRank(int rank) { this.rank = rank; }",
+                "    public int getRank() { return rank; }",
+                "    public void setRelated(List<ContentItem> related) { this.related = related; }",
+                "    public List<ContentItem> getRelated() { return related; }",
+                "    public String getReadOnly() { return readOnly; }",
+                "    @ContentItemMapping(\"nested\")",
+                "    public static class Nested {",
+                "    }",
+                "    @ContentItemMapping(\"skipped\")",
+                "    public abstract static class Skipped {",
+                "    }",
+                "}"), StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager =
+                     compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-d", classes.getPath(), "-classpath", java.lang.System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjects(sourceFile));
+            task.setProcessors(Collections.singletonList(new ContentItemMappingProcessor()));
+            Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        }
+        Assert.assertTrue(diagnostics.getDiagnostics().toString().contains("sample.Article.Skipped"));
+
+        List<String> services = Files.readAllLines(
+                new File(classes, ContentItemMappingProcessor.SERVICE_FILE).toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(
+                Arrays.asList("sample.Article_ContentItemMapper", "sample.Article_Nested_ContentItemMapper"), services);
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader =
+                     new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader())) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            Class<?> articleClass = classLoader.loadClass("sample.Article");
+            ContentItemMapper<Object> mapper = (ContentItemMapper<Object>)
+                    classLoader.loadClass("sample.Article_ContentItemMapper").newInstance();
+            Assert.assertEquals("article", mapper.getContentType());
+            Assert.assertSame(articleClass, mapper.getMappedClass());
+            Object article = mapper.newInstance();
+            Assert.assertTrue(mapper.setValue(article, "rank", 3));
+            Assert.assertFalse(mapper.setValue(article, "rank", "3"));
+            Assert.assertFalse(mapper.setValue(article, "readOnly", "value"));
+            Assert.assertEquals(3, articleClass.getMethod("getRank").invoke(article));
+
+            //The converter registers and uses the generated mappers
+            StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+            converter.registerGeneratedMappers();
+            ContentItem item = new ContentItem();
+            System system = new System();
+            system.setType("article");
+            item.setSystem(system);
+            TextElement title = new TextElement();
+            title.setValue("On Roasts");
+            item.setElements(new HashMap<>(Collections.singletonMap("title", title)));
+            Object converted = converter.convert(item, new HashMap<>(), "article");
+            Assert.assertSame(articleClass, converted.getClass());
+            Assert.assertEquals("On Roasts", articleClass.getMethod("getHeadline").invoke(converted));
+            Assert.assertSame(system, articleClass.getMethod("getSystem").invoke(converted));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+}
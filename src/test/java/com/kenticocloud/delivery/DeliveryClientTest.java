@@ -30,24 +30,39 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
 import org.apache.http.*;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.localserver.LocalServerTestBase;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
 public class DeliveryClientTest extends LocalServerTestBase {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testGetItems() throws Exception {
         String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
@@ -87,6 +102,37 @@ public class DeliveryClientTest extends LocalServerTestBase {
         Assert.assertTrue(((RichTextElement) items.getItems().get(1).getElements().get("description")).getValue().contains("<p>test</p>"));
     }
 
+    @Test
+    public void testGetItemsAsync() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items"),
+                (request, response, context) -> response.setEntity(
+                        new InputStreamEntity(
+                                this.getClass().getResourceAsStream("SampleContentItemList.json")
+                        )
+                ));
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setProjectId(projectId);
+
+        try (DeliveryClient client = new DeliveryClient(deliveryOptions, null)) {
+            client.setContentLinkUrlResolver(Link::getUrlSlug);
+            client.addRichTextElementResolver(content -> String.format("%s%s", "<p>test</p>", content));
+
+            ContentItemsListingResponse items = client.getItemsAsync().get();
+            Assert.assertNotNull(items);
+            Assert.assertTrue(((RichTextElement) items.getItems().get(1).getElements().get("description")).getValue().contains("href=\"/on roasts\""));
+            Assert.assertTrue(((RichTextElement) items.getItems().get(1).getElements().get("description")).getValue().contains("<p>test</p>"));
+
+            client.registerType(ArticleItem.class);
+            List<ArticleItem> articles = client.getItemsAsync(ArticleItem.class).get();
+            Assert.assertEquals(items.getItems().size(), articles.size());
+        }
+    }
+
     @Test
     public void testGetAllItems() throws Exception {
         String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
@@ -385,6 +431,556 @@ public class DeliveryClientTest extends LocalServerTestBase {
         ContentItemResponse item = client.getItem("on_roasts");
         Assert.assertNotNull(item);
         Assert.assertTrue(cacheHit[0]);
+        //Responses are only made read-only when shared through a result cache
+        item.getItem().getElements().clear();
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        DeliveryClient client = new DeliveryClient(projectId);
+        ObjectMapper objectMapper = new ObjectMapper();
+        final JsonNode[] response = {
+                objectMapper.readValue(this.getClass().getResourceAsStream("SampleContentItem.json"), JsonNode.class)};
+        client.setCacheManager((requestUri, executor) -> response[0]);
+        ResultCache resultCache = new ResultCache();
+        client.setResultCache(resultCache);
+
+        ContentItemResponse first = client.getItem("on_roasts");
+        Assert.assertSame(first, client.getItem("on_roasts"));
+        Assert.assertSame(first, client.getItemAsync("on_roasts").get());
+        ArticleItem article = client.getItem("on_roasts", ArticleItem.class);
+        Assert.assertSame(article, client.getItem("on_roasts", ArticleItem.class));
+        Assert.assertEquals(3, resultCache.getHitCount());
+        Assert.assertEquals(2, resultCache.getMissCount());
+        try {
+            first.getItem().getElements().clear();
+            Assert.fail("Expected shared results to be read-only");
+        } catch (UnsupportedOperationException e) {
+            //Expected
+        }
+
+        //A new response from the cache manager yields a new result
+        response[0] = response[0].deepCopy();
+        ContentItemResponse second = client.getItem("on_roasts");
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(second, client.getItem("on_roasts"));
+
+        //So does a change to the resolvers
+        client.setContentLinkUrlResolver(link -> "/" + link.getUrlSlug());
+        Assert.assertNotSame(second, client.getItem("on_roasts"));
+    }
+
+    @Test
+    public void testResultCacheSharesReadOnlyTypedItems() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        DeliveryClient client = new DeliveryClient(projectId);
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode response =
+                objectMapper.readValue(this.getClass().getResourceAsStream("SampleContentItemList.json"), JsonNode.class);
+        client.setCacheManager((requestUri, executor) -> response);
+        client.registerType(ArticleItem.class);
+        client.setResultCache(new ResultCache());
+
+        List<ArticleItem> items = client.getItems(ArticleItem.class);
+        Assert.assertSame(items, client.getItems(ArticleItem.class));
+        try {
+            items.clear();
+            Assert.fail("Expected shared results to be read-only");
+        } catch (UnsupportedOperationException e) {
+            //Expected
+        }
+        Assert.assertFalse(client.getItems(ArticleItem.class).isEmpty());
+    }
+
+    @Test
+    public void testResultCacheWithPersistentCacheManager() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    response.setHeader("Cache-Control", "max-age=60");
+                    response.setEntity(
+                            new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json")));
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        ResultCache resultCache = new ResultCache();
+        client.setResultCache(resultCache);
+        try (PersistentCacheManager cacheManager = new PersistentCacheManager(folder.getRoot().toPath())) {
+            client.setCacheManager(cacheManager);
+
+            ContentItemResponse first = client.getItem("on_roasts");
+            for (int i = 0; i < 3; i++) {
+                Assert.assertSame(first, client.getItem("on_roasts"));
+            }
+            Assert.assertSame(first, client.getItemAsync("on_roasts").get());
+            Assert.assertEquals(4, cacheManager.getHitCount());
+            Assert.assertEquals(4, resultCache.getHitCount());
+            Assert.assertEquals(1, resultCache.getMissCount());
+        }
+        client.close();
+    }
+
+    @Test
+    public void testStreamingAndTreeBindingMatch() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> response.setEntity(
+                        new InputStreamEntity(
+                                this.getClass().getResourceAsStream("SampleContentItem.json")
+                        )
+                ));
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setProjectId(projectId);
+        DeliveryClient client = new DeliveryClient(deliveryOptions, null);
+
+        //No cache manager, bound straight from the response stream
+        ContentItemResponse streamed = client.getItem("on_roasts");
+
+        //Tree based cache manager
+        final boolean[] treeRequested = {false};
+        client.setCacheManager((requestUri, executor) -> {
+            treeRequested[0] = true;
+            return executor.execute();
+        });
+        ContentItemResponse fromTree = client.getItem("on_roasts");
+        Assert.assertTrue(treeRequested[0]);
+
+        Assert.assertEquals(fromTree.getItem().getSystem().getCodename(), streamed.getItem().getSystem().getCodename());
+        Assert.assertEquals(fromTree.getItem().getElements().keySet(), streamed.getItem().getElements().keySet());
+        Assert.assertEquals(fromTree.getModularContent().keySet(), streamed.getModularContent().keySet());
+        Assert.assertEquals(fromTree.getItem().getString("body_copy"), streamed.getItem().getString("body_copy"));
+
+        //Unsetting the cache manager goes back to streaming
+        treeRequested[0] = false;
+        client.setCacheManager(null);
+        Assert.assertNotNull(client.getItem("on_roasts"));
+        Assert.assertFalse(treeRequested[0]);
+    }
+
+    @Test
+    public void testCacheAsync() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        DeliveryClient client = new DeliveryClient(projectId);
+        final boolean[] cacheHit = {false};
+        client.setCacheManager((requestUri, executor) -> {
+            Assert.assertEquals("https://deliver.kenticocloud.com/02a70003-e864-464e-b62c-e0ede97deb8c/items/on_roasts", requestUri);
+            cacheHit[0] = true;
+            ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.registerModule(new JSR310Module());
+            objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            return objectMapper.readValue(this.getClass().getResourceAsStream("SampleContentItem.json"), JsonNode.class);
+        });
+        ContentItemResponse item = client.getItemAsync("on_roasts").get();
+        Assert.assertNotNull(item);
+        Assert.assertTrue(cacheHit[0]);
+    }
+
+    @Test
+    public void testConditionalRevalidation() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final int[] notModified = {0};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    response.setHeader("ETag", "\"v1\"");
+                    response.setHeader("Cache-Control", "max-age=0");
+                    Header ifNoneMatch = request.getFirstHeader("If-None-Match");
+                    if (ifNoneMatch != null && "\"v1\"".equals(ifNoneMatch.getValue())) {
+                        notModified[0]++;
+                        response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+                        return;
+                    }
+                    response.setEntity(
+                            new InputStreamEntity(
+                                    this.getClass().getResourceAsStream("SampleContentItem.json")
+                            )
+                    );
+                });
+        HttpHost httpHost = this.start();
+        DeliveryClient client = new DeliveryClient(projectId);
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager();
+        client.setCacheManager(cacheManager);
+
+        //modify default baseurl to point to test server, this is private so using reflection
+        String testServerUri = httpHost.toURI() + "/%s";
+        Field deliveryOptionsField = client.getClass().getDeclaredField("deliveryOptions");
+        deliveryOptionsField.setAccessible(true);
+        ((DeliveryOptions) deliveryOptionsField.get(client)).setProductionEndpoint(testServerUri);
+
+        ContentItemResponse first = client.getItem("on_roasts");
+        ContentItemResponse second = client.getItem("on_roasts");
+        ContentItemResponse third = client.getItemAsync("on_roasts").get();
+        Assert.assertEquals(2, notModified[0]);
+        Assert.assertEquals(2, cacheManager.getRevalidationCount());
+        Assert.assertEquals(first.getItem().getSystem().getCodename(), second.getItem().getSystem().getCodename());
+        Assert.assertEquals(first.getItem().getSystem().getCodename(), third.getItem().getSystem().getCodename());
+    }
+
+    @Test
+    public void testCompactCacheEntries() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final int[] notModified = {0};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    response.setHeader("ETag", "\"v1\"");
+                    response.setHeader("Cache-Control", "max-age=0");
+                    if (request.getFirstHeader("If-None-Match") != null) {
+                        notModified[0]++;
+                        response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+                        return;
+                    }
+                    response.setEntity(
+                            new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json")));
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager();
+        cacheManager.setEntryFormat(InMemoryCacheManager.EntryFormat.COMPRESSED_BYTES);
+        client.setCacheManager(cacheManager);
+
+        ContentItemResponse first = client.getItem("on_roasts");
+        ContentItemResponse second = client.getItem("on_roasts");
+        ContentItemResponse third = client.getItemAsync("on_roasts").get();
+        Assert.assertEquals(2, notModified[0]);
+        Assert.assertEquals(2, cacheManager.getRevalidationCount());
+        Assert.assertEquals("on_roasts", first.getItem().getSystem().getCodename());
+        Assert.assertEquals(first.getItem().getSystem().getCodename(), second.getItem().getSystem().getCodename());
+        Assert.assertEquals(first.getItem().getSystem().getCodename(), third.getItem().getSystem().getCodename());
+        client.close();
+    }
+
+    @Test
+    public void testRetryAfterServerError() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final int[] requests = {0};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    if (++requests[0] % 2 == 1) {
+                        response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+                        response.setHeader("Retry-After", "0");
+                        return;
+                    }
+                    response.setEntity(
+                            new InputStreamEntity(
+                                    this.getClass().getResourceAsStream("SampleContentItem.json")
+                            )
+                    );
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setMaxRetryAttempts(2);
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+
+        ContentItemResponse item = client.getItem("on_roasts");
+        Assert.assertNotNull(item);
+        Assert.assertEquals(2, requests[0]);
+
+        item = client.getItemAsync("on_roasts").get();
+        Assert.assertNotNull(item);
+        Assert.assertEquals(4, requests[0]);
+        client.close();
+    }
+
+    @Test
+    public void testExhaustedRetriesReleaseConnections() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+                    response.setHeader("Retry-After", "0");
+                    response.setEntity(new StringEntity("{\"message\": \"unavailable\"}"));
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setMaxRetryAttempts(1);
+        deliveryOptions.setMaxConnections(1);
+        deliveryOptions.setMaxConnectionsPerRoute(1);
+        deliveryOptions.setConnectionRequestTimeoutMillis(2000);
+        deliveryOptions.setCircuitBreakerFailureThreshold(0);
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+
+        //With a single pooled connection, a leaked entity would block the second request
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.getItem("on_roasts");
+                Assert.fail("Expected IOException");
+            } catch (IOException e) {
+                Assert.assertEquals(0, client.getConnectionPoolStats().getLeased());
+            }
+        }
+        client.close();
+    }
+
+    @Test
+    public void testCircuitBreakerFailsFast() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final int[] requests = {0};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    requests[0]++;
+                    response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setCircuitBreakerFailureThreshold(1);
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+
+        try {
+            client.getItem("on_roasts");
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertFalse(e instanceof CircuitBreakerOpenException);
+        }
+        try {
+            client.getItem("on_roasts");
+            Assert.fail("Expected CircuitBreakerOpenException");
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertEquals(1, requests[0]);
+        }
+        try {
+            client.getItemAsync("on_roasts").get();
+            Assert.fail("Expected CircuitBreakerOpenException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+        }
+    }
+
+    @Test
+    public void testAsyncResponsesAreProcessedOnCallbackExecutor() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> response.setEntity(
+                        new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json"))));
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "delivery-callback-test"));
+        List<String> parsingThreads = Collections.synchronizedList(new ArrayList<>());
+        client.setCallbackExecutor(callbackExecutor);
+        client.setMetricsListener(new DeliveryMetricsListener() {
+            @Override
+            public void onRichTextProcessed(String endpoint, long nanos) {
+                parsingThreads.add(Thread.currentThread().getName());
+            }
+        });
+        try {
+            client.getItemAsync("on_roasts").get();
+            client.getItemAsync("on_roasts", ArticleItem.class).get();
+            Assert.assertEquals(
+                    Arrays.asList("delivery-callback-test", "delivery-callback-test"), parsingThreads);
+        } finally {
+            client.close();
+            callbackExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShedProbeDoesNotKeepCircuitBreakerOpen() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final int[] requests = {0};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    if (requests[0]++ == 0) {
+                        response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                        return;
+                    }
+                    response.setEntity(
+                            new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json")));
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setMaxRetryAttempts(0);
+        deliveryOptions.setCircuitBreakerFailureThreshold(1);
+        deliveryOptions.setCircuitBreakerOpenMillis(20);
+        deliveryOptions.setConcurrencyLimitEnabled(true);
+        deliveryOptions.setInitialConcurrencyLimit(1);
+        deliveryOptions.setMinConcurrencyLimit(1);
+        deliveryOptions.setMaxConcurrencyLimit(1);
+        deliveryOptions.setConcurrencyLimitMaxWaitMillis(10);
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        Field concurrencyLimiterField = client.getClass().getDeclaredField("concurrencyLimiter");
+        concurrencyLimiterField.setAccessible(true);
+        ConcurrencyLimiter concurrencyLimiter = (ConcurrencyLimiter) concurrencyLimiterField.get(client);
+
+        try {
+            client.getItem("on_roasts");
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertFalse(e instanceof CircuitBreakerOpenException);
+        }
+
+        //The probes are shed by the concurrency limiter before reaching the server
+        concurrencyLimiter.acquire("https://example.com/items");
+        Thread.sleep(30);
+        try {
+            client.getItem("on_roasts");
+            Assert.fail("Expected ConcurrencyLimitExceededException");
+        } catch (ConcurrencyLimitExceededException e) {
+            Assert.assertEquals(1, requests[0]);
+        }
+        Thread.sleep(30);
+        try {
+            client.getItemAsync("on_roasts").get();
+            Assert.fail("Expected ConcurrencyLimitExceededException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ConcurrencyLimitExceededException);
+        }
+        concurrencyLimiter.release(0, false);
+
+        //The next probe goes through and closes the breaker
+        Thread.sleep(30);
+        Assert.assertEquals("on_roasts", client.getItem("on_roasts").getItem().getSystem().getCodename());
+        Assert.assertEquals("on_roasts", client.getItemAsync("on_roasts").get().getItem().getSystem().getCodename());
+        Assert.assertEquals(3, requests[0]);
+        client.close();
+    }
+
+    @Test
+    public void testConnectionPoolSettings() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> response.setEntity(
+                        new InputStreamEntity(
+                                this.getClass().getResourceAsStream("SampleContentItem.json")
+                        )
+                ));
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setMaxConnections(64);
+        deliveryOptions.setSocketTimeoutMillis(5000);
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        Assert.assertEquals(64, client.getConnectionPoolStats().getMax());
+
+        client.getItem("on_roasts");
+        client.getItemAsync("on_roasts").get();
+        Assert.assertEquals(0, client.getConnectionPoolStats().getLeased());
+        Assert.assertEquals(64, client.getAsyncConnectionPoolStats().getMax());
+
+        client.setMaxConnections(128);
+        Assert.assertEquals(128, client.getConnectionPoolStats().getMax());
+        Assert.assertEquals(128, client.getAsyncConnectionPoolStats().getMax());
+        //The options may be shared with other clients, so they are left alone
+        Assert.assertEquals(64, deliveryOptions.getMaxConnections());
+
+        client.setHttpTransport(null);
+        Assert.assertEquals(128, client.getConnectionPoolStats().getMax());
+        client.close();
+    }
+
+    @Test
+    public void testCompressedResponse() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        final String[] acceptEncoding = {null};
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> {
+                    Header header = request.getFirstHeader("Accept-Encoding");
+                    acceptEncoding[0] = header == null ? null : header.getValue();
+                    if (acceptEncoding[0] == null) {
+                        response.setEntity(
+                                new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json")));
+                        return;
+                    }
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (InputStream inputStream = this.getClass().getResourceAsStream("SampleContentItem.json");
+                         GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = inputStream.read(buffer)) != -1) {
+                            outputStream.write(buffer, 0, read);
+                        }
+                    }
+                    response.setHeader("Content-Encoding", "gzip");
+                    response.setEntity(new ByteArrayEntity(compressed.toByteArray()));
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+
+        ContentItemResponse item = client.getItem("on_roasts");
+        Assert.assertEquals("gzip, deflate", acceptEncoding[0]);
+        Assert.assertEquals("on_roasts", item.getItem().getSystem().getCodename());
+        item = client.getItemAsync("on_roasts").get();
+        Assert.assertEquals("on_roasts", item.getItem().getSystem().getCodename());
+
+        deliveryOptions.setCompressionEnabled(false);
+        item = client.getItem("on_roasts");
+        Assert.assertNull(acceptEncoding[0]);
+        Assert.assertEquals("on_roasts", item.getItem().getSystem().getCodename());
+        client.close();
+    }
+
+    @Test
+    public void testMetricsListener() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roasts"),
+                (request, response, context) -> response.setEntity(
+                        new InputStreamEntity(this.getClass().getResourceAsStream("SampleContentItem.json"))));
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions(projectId);
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        client.setMetricsListener(metrics);
+        client.setCacheManager(new InMemoryCacheManager());
+
+        client.getItem("on_roasts");
+        client.getItem("on_roasts");
+        client.getItemAsync("on_roasts").get();
+
+        Assert.assertEquals(Collections.singleton("items"), metrics.getEndpoints());
+        Assert.assertEquals(1, metrics.getCacheMissCount("items"));
+        Assert.assertEquals(2, metrics.getCacheHitCount("items"));
+        Assert.assertEquals(1, metrics.getHistogram(
+                "items", HistogramMetricsListener.Phase.CONNECTION_LEASE).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(
+                "items", HistogramMetricsListener.Phase.TIME_TO_FIRST_BYTE).getCount());
+        Assert.assertEquals(1, metrics.getHistogram("items", HistogramMetricsListener.Phase.BODY_READ).getCount());
+        Assert.assertEquals(1, metrics.getHistogram("items", HistogramMetricsListener.Phase.JSON_PARSE).getCount());
+        Assert.assertEquals(3, metrics.getHistogram(
+                "items", HistogramMetricsListener.Phase.TREE_TO_VALUE).getCount());
+        Assert.assertEquals(3, metrics.getHistogram("items", HistogramMetricsListener.Phase.RICH_TEXT).getCount());
+
+        client.setMetricsListener(null);
+        client.getItem("on_roasts");
+        Assert.assertEquals(2, metrics.getCacheHitCount("items"));
+        client.close();
     }
 
     @Test
@@ -772,6 +1368,34 @@ public class DeliveryClientTest extends LocalServerTestBase {
         }
     }
 
+    @Test
+    public void testKenticoExceptionAsync() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+        this.serverBootstrap.registerHandler(
+                String.format("/%s/%s", projectId, "items/on_roatst"),
+                (request, response, context) -> {
+                    response.setStatusCode(404);
+                    response.setEntity(
+                            new InputStreamEntity(
+                                    this.getClass().getResourceAsStream("SampleKenticoError.json")
+                            )
+                    );
+                });
+        HttpHost httpHost = this.start();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setProductionEndpoint(httpHost.toURI() + "/%s");
+        deliveryOptions.setProjectId(projectId);
+
+        try (DeliveryClient client = new DeliveryClient(deliveryOptions, null)) {
+            client.getItemAsync("on_roatst", ArticleItem.class).get();
+            Assert.fail("Expected KenticoErrorException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KenticoErrorException);
+            Assert.assertEquals("The requested content item 'on_roatst' was not found.", e.getCause().getMessage());
+        }
+    }
+
     @Test
     public void testKentico500Exception() throws Exception {
         String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
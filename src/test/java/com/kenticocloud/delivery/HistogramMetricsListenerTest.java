@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class HistogramMetricsListenerTest {
+
+    @Test
+    public void testPercentiles() {
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        for (int i = 1; i <= 100; i++) {
+            metrics.onResponseReceived("items", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        HistogramMetricsListener.Histogram histogram =
+                metrics.getHistogram("items", HistogramMetricsListener.Phase.TIME_TO_FIRST_BYTE);
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(50500), histogram.getMean());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(50), histogram.getPercentile(0.5));
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(99), histogram.getPercentile(0.99));
+        Assert.assertEquals(histogram.getMax(), histogram.getPercentile(1));
+        Assert.assertEquals(0, metrics.getHistogram("types", HistogramMetricsListener.Phase.JSON_PARSE).getCount());
+    }
+
+    @Test
+    public void testBucketBounds() {
+        for (long value = 0; value < 100000; value++) {
+            int index = HistogramMetricsListener.Histogram.indexOf(value);
+            Assert.assertTrue(value <= HistogramMetricsListener.Histogram.upperBoundOf(index));
+            Assert.assertTrue(index == 0 || value > HistogramMetricsListener.Histogram.upperBoundOf(index - 1));
+        }
+        int last = HistogramMetricsListener.Histogram.indexOf(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, HistogramMetricsListener.Histogram.upperBoundOf(last));
+    }
+
+    @Test
+    public void testCacheLookups() {
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        metrics.onCacheLookup("types", true);
+        metrics.onCacheLookup("types", true);
+        metrics.onCacheLookup("types", false);
+
+        Assert.assertEquals(2, metrics.getCacheHitCount("types"));
+        Assert.assertEquals(1, metrics.getCacheMissCount("types"));
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getCacheHitCount("types"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue(actual >= expected);
+        Assert.assertTrue(actual <= expected * 5 / 4);
+    }
+}
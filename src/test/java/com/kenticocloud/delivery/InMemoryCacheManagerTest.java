@@ -0,0 +1,272 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InMemoryCacheManagerTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager();
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = () -> {
+            requests.incrementAndGet();
+            return new ObjectMapper().readValue(
+                    this.getClass().getResourceAsStream("SampleContentItem.json"), JsonNode.class);
+        };
+
+        JsonNode first = cacheManager.resolveRequest("https://example.com/items/on_roasts", executor);
+        JsonNode second = cacheManager.resolveRequest("https://example.com/items/on_roasts", executor);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, cacheManager.getHitCount());
+        Assert.assertEquals(1, cacheManager.getMissCount());
+        Assert.assertEquals(1, cacheManager.getSize());
+        Assert.assertTrue(cacheManager.getWeightedSize() > 0);
+
+        JsonNode async = cacheManager.resolveRequestAsync("https://example.com/items/on_roasts", executor).get();
+        Assert.assertSame(first, async);
+        Assert.assertEquals(1, requests.get());
+
+        cacheManager.invalidate("https://example.com/items/on_roasts");
+        cacheManager.resolveRequest("https://example.com/items/on_roasts", executor);
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(1024 * 1024, 1, TimeUnit.MILLISECONDS);
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = () -> {
+            requests.incrementAndGet();
+            return textNode("value");
+        };
+        cacheManager.resolveRequest("a", executor);
+        Thread.sleep(20);
+        cacheManager.resolveRequest("a", executor);
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(0, cacheManager.getHitCount());
+    }
+
+    @Test
+    public void testWeightBound() {
+        long entryWeight = InMemoryCacheManager.estimateWeight("key-00", textNode("value"));
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(entryWeight * 10, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 50; i++) {
+            cacheManager.put(String.format("key-%02d", i), textNode("value"));
+        }
+        Assert.assertTrue(cacheManager.getWeightedSize() <= entryWeight * 10);
+        Assert.assertEquals(10, cacheManager.getSize());
+        Assert.assertEquals(40, cacheManager.getEvictionCount());
+
+        //Responses bigger than the whole cache are never cached
+        cacheManager.put("huge", textNode(new String(new char[(int) entryWeight * 10])));
+        Assert.assertNull(cacheManager.getIfPresent("huge"));
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        long entryWeight = InMemoryCacheManager.estimateWeight("key-000", textNode("value"));
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(entryWeight * 100, 1, TimeUnit.MINUTES);
+        cacheManager.put("popular", textNode("value"));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(cacheManager.getIfPresent("popular"));
+        }
+        //A scan of one-off requests must not flush the popular entry
+        for (int i = 0; i < 1000; i++) {
+            cacheManager.put(String.format("key-%03d", i), textNode("value"));
+        }
+        Assert.assertNotNull(cacheManager.getIfPresent("popular"));
+        Assert.assertTrue(cacheManager.getWeightedSize() <= entryWeight * 100);
+    }
+
+    @Test
+    public void testEstimateWeight() {
+        ObjectNode small = JsonNodeFactory.instance.objectNode();
+        small.put("name", "value");
+        ObjectNode large = JsonNodeFactory.instance.objectNode();
+        large.put("name", new String(new char[1000]));
+        large.putArray("items").add(1).add(2).add(3);
+        Assert.assertTrue(InMemoryCacheManager.estimateWeight("a", large)
+                > InMemoryCacheManager.estimateWeight("a", small) + 2000);
+    }
+
+    @Test
+    public void testCompactEntryFormats() throws Exception {
+        JsonNode listing = new ObjectMapper().readValue(
+                this.getClass().getResourceAsStream("SampleContentItemList.json"), JsonNode.class);
+        long weight = -1;
+        for (InMemoryCacheManager.EntryFormat format : InMemoryCacheManager.EntryFormat.values()) {
+            InMemoryCacheManager cacheManager = new InMemoryCacheManager();
+            cacheManager.setEntryFormat(format);
+            AtomicInteger requests = new AtomicInteger();
+            HttpRequestExecutor executor = () -> {
+                requests.incrementAndGet();
+                return listing;
+            };
+            Assert.assertEquals(listing, cacheManager.resolveRequest("https://example.com/items", executor));
+            CachedResponse response = cacheManager.resolveResponse("https://example.com/items", executor);
+            Assert.assertEquals(format != InMemoryCacheManager.EntryFormat.TREE, response.isCompact());
+            Assert.assertEquals(listing, response.getBody());
+            Assert.assertEquals(listing, cacheManager.resolveRequestAsync("https://example.com/items", executor).get());
+            Assert.assertEquals(1, requests.get());
+
+            //Each format must be markedly smaller than the previous one
+            if (weight >= 0) {
+                Assert.assertTrue(cacheManager.getWeightedSize() * 2 < weight);
+            }
+            weight = cacheManager.getWeightedSize();
+        }
+    }
+
+    @Test
+    public void testCacheControlOverridesTimeToLive() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(1024 * 1024, 1, TimeUnit.HOURS);
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() {
+                throw new AssertionError("Expected a conditional request");
+            }
+
+            @Override
+            public CachedResponse executeConditionally(CachedResponse previous) {
+                requests.incrementAndGet();
+                return new CachedResponse(textNode("value"), null, null, "public, max-age=0");
+            }
+        };
+
+        cacheManager.resolveRequest("https://example.com/items", executor);
+        cacheManager.resolveRequest("https://example.com/items", executor);
+        Assert.assertEquals(2, requests.get());
+
+        cacheManager.put("https://example.com/uncached", new CachedResponse(textNode("value"), null, null, "no-store"));
+        Assert.assertNull(cacheManager.getIfPresent("https://example.com/uncached"));
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(1024 * 1024, 0, TimeUnit.SECONDS);
+        cacheManager.setStaleWhileRevalidate(1, TimeUnit.HOURS);
+        List<Runnable> refreshes = new ArrayList<>();
+        cacheManager.setRefreshExecutor(refreshes::add);
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = () -> textNode("v" + requests.incrementAndGet());
+
+        Assert.assertEquals("v1", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+        //Expired, so the stale response is served and a single refresh is scheduled
+        Assert.assertEquals("v1", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+        Assert.assertEquals("v1", cacheManager.resolveRequestAsync("https://example.com/items", executor).get().asText());
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, refreshes.size());
+        Assert.assertEquals(2, cacheManager.getStaleHitCount());
+
+        refreshes.get(0).run();
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals("v2", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+    }
+
+    @Test
+    public void testRefreshUsesDetachedExecutor() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(1024 * 1024, 0, TimeUnit.SECONDS);
+        cacheManager.setStaleWhileRevalidate(1, TimeUnit.HOURS);
+        List<Runnable> refreshes = new ArrayList<>();
+        cacheManager.setRefreshExecutor(refreshes::add);
+        AtomicInteger refreshRequests = new AtomicInteger();
+        cacheManager.resolveRequest("https://example.com/items", () -> textNode("v1"));
+
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() {
+                requests.incrementAndGet();
+                return textNode("v2");
+            }
+
+            @Override
+            public HttpRequestExecutor detached() {
+                return () -> textNode("v" + (1 + refreshRequests.incrementAndGet()));
+            }
+        };
+        Assert.assertEquals("v1", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+        refreshes.get(0).run();
+        //The stale hit never invoked the executor of the request it served
+        Assert.assertEquals(0, requests.get());
+        Assert.assertEquals(1, refreshRequests.get());
+    }
+
+    @Test
+    public void testStaleIfError() throws Exception {
+        InMemoryCacheManager cacheManager = new InMemoryCacheManager(1024 * 1024, 0, TimeUnit.SECONDS);
+        cacheManager.setStaleIfError(1, TimeUnit.HOURS);
+        cacheManager.put("https://example.com/items", textNode("stale"));
+
+        JsonNode response = cacheManager.resolveRequest("https://example.com/items", () -> {
+            throw new IOException("Kentico is likely suffering site issues.");
+        });
+        Assert.assertEquals("stale", response.asText());
+        HttpRequestExecutor failing = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() throws IOException {
+                throw new IOException("Connection refused");
+            }
+
+            @Override
+            public CompletableFuture<JsonNode> executeAsync() {
+                CompletableFuture<JsonNode> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException("Connection refused"));
+                return future;
+            }
+        };
+        Assert.assertEquals("stale", cacheManager.resolveRequestAsync("https://example.com/items", failing).get().asText());
+        Assert.assertEquals(2, cacheManager.getStaleHitCount());
+
+        try {
+            cacheManager.resolveRequest("https://example.com/items", () -> {
+                throw new KenticoErrorException(new KenticoError());
+            });
+            Assert.fail("Expected KenticoErrorException");
+        } catch (KenticoErrorException e) {
+            //Client errors are not masked by stale responses
+        }
+    }
+
+    private static JsonNode textNode(String value) {
+        return JsonNodeFactory.instance.textNode(value);
+    }
+}
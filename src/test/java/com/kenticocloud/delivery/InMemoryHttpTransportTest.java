@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+
+public class InMemoryHttpTransportTest {
+
+    @Test
+    public void testServesRegisteredResponses() throws Exception {
+        String projectId = "02a70003-e864-464e-b62c-e0ede97deb8c";
+        InMemoryHttpTransport transport = new InMemoryHttpTransport();
+        transport.register(
+                "https://deliver.kenticocloud.com/02a70003-e864-464e-b62c-e0ede97deb8c/items/on_roasts",
+                readResource("SampleContentItem.json"));
+        DeliveryClient client = new DeliveryClient(projectId);
+        client.setHttpTransport(transport);
+        Assert.assertSame(transport, client.getHttpTransport());
+
+        ContentItemResponse item = client.getItem("on_roasts");
+        Assert.assertEquals("on_roasts", item.getItem().getSystem().getCodename());
+        item = client.getItemAsync("on_roasts").get();
+        Assert.assertEquals("on_roasts", item.getItem().getSystem().getCodename());
+        Assert.assertEquals(2, transport.getRequestCount());
+    }
+
+    @Test
+    public void testConcurrencyLimitedRequests() throws Exception {
+        DeliveryOptions deliveryOptions = new DeliveryOptions("02a70003-e864-464e-b62c-e0ede97deb8c");
+        deliveryOptions.setConcurrencyLimitEnabled(true);
+        InMemoryHttpTransport transport = new InMemoryHttpTransport();
+        transport.register(
+                "https://deliver.kenticocloud.com/02a70003-e864-464e-b62c-e0ede97deb8c/items/on_roasts",
+                readResource("SampleContentItem.json"));
+        DeliveryClient client = new DeliveryClient(deliveryOptions);
+        client.setHttpTransport(transport);
+
+        Assert.assertNotNull(client.getItem("on_roasts"));
+        Assert.assertNotNull(client.getItemAsync("on_roasts").get());
+        Assert.assertEquals(0, client.getInFlightRequestCount());
+        Assert.assertEquals(20, client.getConcurrencyLimit());
+    }
+
+    @Test
+    public void testUnregisteredRequestIsNotFound() throws Exception {
+        DeliveryClient client = new DeliveryClient("02a70003-e864-464e-b62c-e0ede97deb8c");
+        client.setHttpTransport(new InMemoryHttpTransport());
+
+        try {
+            client.getItem("missing");
+            Assert.fail("Expected KenticoErrorException");
+        } catch (KenticoErrorException e) {
+            Assert.assertEquals(100, e.getKenticoError().getErrorCode());
+        }
+        try {
+            client.getItemAsync("missing").get();
+            Assert.fail("Expected KenticoErrorException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KenticoErrorException);
+        }
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = this.getClass().getResourceAsStream(name)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}
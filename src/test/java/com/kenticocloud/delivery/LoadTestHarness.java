@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a {@link DeliveryClient} from concurrent threads against a {@link StubDeliveryServer}, and reports throughput
+ * and latency percentiles.  Useful for sizing connection pools, caches and retry policies before deploying.
+ * <p>
+ * Run with {@code ./gradlew loadTest}, passing settings as system properties, for example
+ * {@code ./gradlew loadTest -Dthreads=64 -DlatencyMillis=50 -DerrorRate=0.01 -DmaxRetryAttempts=2}:
+ * <ul>
+ * <li>{@code threads}: concurrent callers, 16 by default</li>
+ * <li>{@code durationSeconds}: length of the measured run, 30 by default</li>
+ * <li>{@code warmupSeconds}: length of the unmeasured warm-up, 5 by default</li>
+ * <li>{@code latencyMillis} and {@code latencyJitterMillis}: stub server latency, 20 and 10 by default</li>
+ * <li>{@code errorRate}: fraction of requests the stub answers with a 503, 0 by default</li>
+ * <li>{@code maxConnections}: connection pool size, 20 by default</li>
+ * <li>{@code maxRetryAttempts}: retries of failed requests, 0 by default</li>
+ * <li>{@code cache}: whether responses are cached in an {@link InMemoryCacheManager}, false by default</li>
+ * <li>{@code listingRatio}: fraction of requests retrieving the item listing rather than a single item,
+ * 0.2 by default</li>
+ * </ul>
+ */
+public class LoadTestHarness {
+
+    private static final String PROJECT_ID = "02a70003-e864-464e-b62c-e0ede97deb8c";
+
+    int threads = Integer.getInteger("threads", 16);
+    long durationSeconds = Long.getLong("durationSeconds", 30);
+    long warmupSeconds = Long.getLong("warmupSeconds", 5);
+    long latencyMillis = Long.getLong("latencyMillis", 20);
+    long latencyJitterMillis = Long.getLong("latencyJitterMillis", 10);
+    double errorRate = Double.parseDouble(java.lang.System.getProperty("errorRate", "0"));
+    int maxConnections = Integer.getInteger("maxConnections", 20);
+    int maxRetryAttempts = Integer.getInteger("maxRetryAttempts", 0);
+    boolean cache = Boolean.getBoolean("cache");
+    double listingRatio = Double.parseDouble(java.lang.System.getProperty("listingRatio", "0.2"));
+
+    public static void main(String[] args) throws Exception {
+        Result result = new LoadTestHarness().run();
+        java.lang.System.out.println(result);
+    }
+
+    /**
+     * Runs the warm-up and the measured load test.
+     * @return the measurements of the measured run
+     * @throws IOException Thrown if the stub server fails to start
+     * @throws InterruptedException Thrown if interrupted while waiting for the callers
+     */
+    public Result run() throws IOException, InterruptedException {
+        try (StubDeliveryServer server = new StubDeliveryServer(PROJECT_ID)) {
+            server.setLatency(latencyMillis, latencyJitterMillis);
+            server.setErrorRate(errorRate);
+            server.start();
+
+            DeliveryOptions deliveryOptions = new DeliveryOptions(PROJECT_ID);
+            deliveryOptions.setProductionEndpoint(server.getProductionEndpoint());
+            deliveryOptions.setMaxConnections(maxConnections);
+            deliveryOptions.setMaxConnectionsPerRoute(maxConnections);
+            deliveryOptions.setMaxRetryAttempts(maxRetryAttempts);
+            try (DeliveryClient client = new DeliveryClient(deliveryOptions)) {
+                if (cache) {
+                    client.setCacheManager(new InMemoryCacheManager());
+                }
+                drive(client, TimeUnit.SECONDS.toNanos(warmupSeconds));
+                long requestsBefore = server.getRequestCount();
+                Result result = drive(client, TimeUnit.SECONDS.toNanos(durationSeconds));
+                result.serverRequests = server.getRequestCount() - requestsBefore;
+                return result;
+            }
+        }
+    }
+
+    private Result drive(DeliveryClient client, long durationNanos) throws InterruptedException {
+        Caller[] callers = new Caller[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong failures = new AtomicLong();
+        long start = java.lang.System.nanoTime();
+        long deadline = start + durationNanos;
+        for (int i = 0; i < threads; i++) {
+            callers[i] = new Caller(client, deadline, failures, done);
+            Thread thread = new Thread(callers[i], "load-test-caller-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        long elapsed = java.lang.System.nanoTime() - start;
+
+        int count = 0;
+        for (Caller caller : callers) {
+            count += caller.count;
+        }
+        long[] latencies = new long[count];
+        int offset = 0;
+        for (Caller caller : callers) {
+            java.lang.System.arraycopy(caller.latencies, 0, latencies, offset, caller.count);
+            offset += caller.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(threads, elapsed, latencies, failures.get());
+    }
+
+    private class Caller implements Runnable {
+
+        private final DeliveryClient client;
+        private final long deadline;
+        private final AtomicLong failures;
+        private final CountDownLatch done;
+        long[] latencies = new long[1024];
+        int count;
+
+        Caller(DeliveryClient client, long deadline, AtomicLong failures, CountDownLatch done) {
+            this.client = client;
+            this.deadline = deadline;
+            this.failures = failures;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (java.lang.System.nanoTime() < deadline) {
+                    long start = java.lang.System.nanoTime();
+                    try {
+                        if (ThreadLocalRandom.current().nextDouble() < listingRatio) {
+                            client.getItems();
+                        } else {
+                            client.getItem("on_roasts");
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                    record(java.lang.System.nanoTime() - start);
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+
+    /**
+     * The measurements of a load test run.  Latencies include failed requests.
+     */
+    public static class Result {
+
+        final int threads;
+        final long elapsedNanos;
+        final long[] sortedLatencies;
+        final long failures;
+        long serverRequests;
+
+        Result(int threads, long elapsedNanos, long[] sortedLatencies, long failures) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+            this.failures = failures;
+        }
+
+        public long getRequestCount() {
+            return sortedLatencies.length;
+        }
+
+        public long getFailureCount() {
+            return failures;
+        }
+
+        public long getServerRequestCount() {
+            return serverRequests;
+        }
+
+        public double getThroughput() {
+            return sortedLatencies.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Gets a percentile of the request latencies.
+         * @param percentile The percentile, between 0 and 1
+         * @return the latency in nanoseconds, or 0 if no request completed
+         */
+        public long getPercentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "threads=%d, requests=%d, failures=%d, server requests=%d, throughput=%.1f/s, " +
+                            "p50=%.2fms, p99=%.2fms, p999=%.2fms",
+                    threads, getRequestCount(), failures, serverRequests, getThroughput(),
+                    getPercentile(0.5) / 1e6, getPercentile(0.99) / 1e6, getPercentile(0.999) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadTestHarnessTest {
+
+    @Test
+    public void testShortRun() throws Exception {
+        LoadTestHarness harness = new LoadTestHarness();
+        harness.threads = 4;
+        harness.warmupSeconds = 0;
+        harness.durationSeconds = 1;
+        harness.latencyMillis = 5;
+        harness.latencyJitterMillis = 5;
+
+        LoadTestHarness.Result result = harness.run();
+        Assert.assertTrue(result.getRequestCount() > 0);
+        Assert.assertEquals(0, result.getFailureCount());
+        Assert.assertEquals(result.getRequestCount(), result.getServerRequestCount());
+        Assert.assertTrue(result.getPercentile(0.5) >= 5000000);
+        Assert.assertTrue(result.getPercentile(0.5) <= result.getPercentile(0.99));
+        Assert.assertTrue(result.getPercentile(0.99) <= result.getPercentile(0.999));
+    }
+
+    @Test
+    public void testInjectedErrors() throws Exception {
+        LoadTestHarness harness = new LoadTestHarness();
+        harness.threads = 2;
+        harness.warmupSeconds = 0;
+        harness.durationSeconds = 1;
+        harness.latencyMillis = 0;
+        harness.latencyJitterMillis = 0;
+        harness.errorRate = 1;
+
+        LoadTestHarness.Result result = harness.run();
+        Assert.assertTrue(result.getRequestCount() > 0);
+        Assert.assertEquals(result.getRequestCount(), result.getFailureCount());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+
+public class MappingPlanTest {
+
+    @Test
+    public void testSetterHandleUnboxesPrimitives() throws Exception {
+        MappingPlan plan = MappingPlan.of(Bean.class);
+        Bean bean = (Bean) plan.newInstance();
+        MappingPlan.FieldBinding count = binding(plan, "count");
+        Assert.assertNotNull(getSetter(count));
+        count.set(bean, 42);
+        Assert.assertEquals(42, bean.count);
+        binding(plan, "title").set(bean, "Coffee");
+        Assert.assertEquals("Coffee", bean.title);
+    }
+
+    @Test
+    public void testValuesOfAnotherTypeAreConverted() throws Exception {
+        MappingPlan plan = MappingPlan.of(Bean.class);
+        Bean bean = (Bean) plan.newInstance();
+        binding(plan, "count").set(bean, 3.0d);
+        Assert.assertEquals(3, bean.count);
+        binding(plan, "count").set(bean, "7");
+        Assert.assertEquals(7, bean.count);
+    }
+
+    @Test
+    public void testFieldWithoutSetterIsLeftAlone() throws Exception {
+        MappingPlan plan = MappingPlan.of(Bean.class);
+        Bean bean = (Bean) plan.newInstance();
+        MappingPlan.FieldBinding tags = binding(plan, "tags");
+        Assert.assertNull(getSetter(tags));
+        Assert.assertNull(tags.valueType);
+        tags.set(bean, Collections.singletonList("tag"));
+        Assert.assertNull(bean.tags);
+    }
+
+    @Test
+    public void testPrivateDefaultConstructorIsUsed() throws Exception {
+        Assert.assertTrue(MappingPlan.of(PrivateConstructorBean.class).newInstance() instanceof PrivateConstructorBean);
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testMissingDefaultConstructor() throws Exception {
+        MappingPlan.of(NoDefaultConstructorBean.class).newInstance();
+    }
+
+    private static MappingPlan.FieldBinding binding(MappingPlan plan, String fieldName) {
+        for (MappingPlan.FieldBinding binding : plan.getBindings()) {
+            if (binding.field.getName().equals(fieldName)) {
+                return binding;
+            }
+        }
+        throw new AssertionError("No binding for " + fieldName);
+    }
+
+    private static Object getSetter(MappingPlan.FieldBinding binding) throws Exception {
+        Field setter = MappingPlan.FieldBinding.class.getDeclaredField("setter");
+        setter.setAccessible(true);
+        return setter.get(binding);
+    }
+
+    public static class Bean {
+
+        int count;
+
+        String title;
+
+        List<String> tags;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+    }
+
+    public static class PrivateConstructorBean {
+
+        private PrivateConstructorBean() {
+        }
+    }
+
+    public static class NoDefaultConstructorBean {
+
+        public NoDefaultConstructorBean(String title) {
+        }
+    }
+}
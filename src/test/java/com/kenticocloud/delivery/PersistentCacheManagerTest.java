@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PersistentCacheManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testServesResponsesAfterRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = () -> {
+            requests.incrementAndGet();
+            return textNode("value");
+        };
+
+        try (PersistentCacheManager cacheManager = new PersistentCacheManager(directory)) {
+            Assert.assertEquals("value", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+            Assert.assertEquals("value", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+            cacheManager.resolveRequest("https://example.com/types", executor);
+            cacheManager.invalidate("https://example.com/types");
+            Assert.assertEquals(2, requests.get());
+            Assert.assertEquals(1, cacheManager.getHitCount());
+        }
+
+        try (PersistentCacheManager cacheManager = new PersistentCacheManager(directory)) {
+            Assert.assertEquals(1, cacheManager.getSize());
+            Assert.assertEquals("value", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+            Assert.assertEquals(2, requests.get());
+            cacheManager.resolveRequest("https://example.com/types", executor);
+            Assert.assertEquals(3, requests.get());
+        }
+    }
+
+    @Test
+    public void testResolvesResponsesWithoutParsing() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() {
+                throw new AssertionError("Expected an unparsed request");
+            }
+
+            @Override
+            public CachedResponse executeConditionallyUnparsed(CachedResponse previous) {
+                requests.incrementAndGet();
+                return new CachedResponse("\"value\"".getBytes(StandardCharsets.UTF_8), "\"v1\"", null, null);
+            }
+        };
+
+        try (PersistentCacheManager cacheManager = new PersistentCacheManager(folder.getRoot().toPath())) {
+            Assert.assertTrue(cacheManager.resolveResponse("https://example.com/items", executor).isCompact());
+            CachedResponse response = cacheManager.resolveResponse("https://example.com/items", executor);
+            Assert.assertTrue(response.isCompact());
+            Assert.assertEquals("\"v1\"", response.getETag());
+            Assert.assertEquals("value", response.getBody().asText());
+            Assert.assertEquals("value", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+            Assert.assertEquals(1, requests.get());
+        }
+    }
+
+    @Test
+    public void testRevalidatesExpiredResponses() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpRequestExecutor executor = new HttpRequestExecutor() {
+            @Override
+            public JsonNode execute() {
+                throw new AssertionError("Expected a conditional request");
+            }
+
+            @Override
+            public CachedResponse executeConditionally(CachedResponse previous) {
+                requests.incrementAndGet();
+                CachedResponse response = new CachedResponse(textNode("value"), "\"v1\"", null, "max-age=0");
+                if (previous != null) {
+                    Assert.assertEquals("\"v1\"", previous.getETag());
+                    try {
+                        previous.getBody();
+                        Assert.fail("Expected the candidate to hold only validators");
+                    } catch (IllegalStateException expected) {
+                    }
+                    return previous.revalidated(null, null, "max-age=0");
+                }
+                return response;
+            }
+        };
+
+        try (PersistentCacheManager cacheManager = new PersistentCacheManager(folder.getRoot().toPath())) {
+            cacheManager.resolveRequest("https://example.com/items", executor);
+            Assert.assertEquals("value", cacheManager.resolveRequest("https://example.com/items", executor).asText());
+            Assert.assertEquals(2, requests.get());
+            Assert.assertEquals(1, cacheManager.getRevalidationCount());
+        }
+    }
+
+    @Test
+    public void testServesStaleResponsesAfterRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (PersistentCacheManager cacheManager =
+                     new PersistentCacheManager(directory, 1024 * 1024, 1, TimeUnit.MILLISECONDS)) {
+            cacheManager.resolveRequest("a", () -> textNode("stale"));
+        }
+        Thread.sleep(20);
+
+        try (PersistentCacheManager cacheManager =
+                     new PersistentCacheManager(directory, 1024 * 1024, 1, TimeUnit.HOURS)) {
+            cacheManager.setStaleWhileRevalidate(1, TimeUnit.HOURS);
+            cacheManager.setRefreshExecutor(Runnable::run);
+            Assert.assertEquals("stale", cacheManager.resolveRequest("a", () -> textNode("fresh")).asText());
+            Assert.assertEquals(1, cacheManager.getStaleHitCount());
+            Assert.assertEquals("fresh", cacheManager.resolveRequest("a", () -> textNode("other")).asText());
+        }
+    }
+
+    @Test
+    public void testEvictsOldestSegment() throws Exception {
+        long maximumSize = 256 * 1024;
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1024; i++) {
+            value.append("0123456789");
+        }
+        try (PersistentCacheManager cacheManager =
+                     new PersistentCacheManager(folder.getRoot().toPath(), maximumSize, 1, TimeUnit.HOURS)) {
+            for (int i = 0; i < 100; i++) {
+                cacheManager.resolveRequest("item" + i, () -> textNode(value.toString()));
+            }
+            Assert.assertTrue(cacheManager.getDiskSize() <= maximumSize);
+            Assert.assertTrue(cacheManager.getSize() < 100);
+            AtomicInteger requests = new AtomicInteger();
+            cacheManager.resolveRequest("item99", () -> {
+                requests.incrementAndGet();
+                return textNode("value");
+            });
+            cacheManager.resolveRequest("item0", () -> {
+                requests.incrementAndGet();
+                return textNode("value");
+            });
+            Assert.assertEquals(1, requests.get());
+        }
+    }
+
+    private static JsonNode textNode(String value) {
+        return JsonNodeFactory.instance.textNode(value);
+    }
+}
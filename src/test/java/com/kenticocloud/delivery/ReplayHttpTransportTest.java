@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+public class ReplayHttpTransportTest {
+
+    private static final String PROJECT_ID = "02a70003-e864-464e-b62c-e0ede97deb8c";
+    private static final String ITEM_URI =
+            "https://deliver.kenticocloud.com/02a70003-e864-464e-b62c-e0ede97deb8c/items/on_roasts";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordAndReplay() throws Exception {
+        Path archive = temporaryFolder.newFile("traffic.bin").toPath();
+        InMemoryHttpTransport transport = new InMemoryHttpTransport();
+        transport.register(ITEM_URI, 200, gzip(readResource("SampleContentItem.json")),
+                new BasicHeader("Content-Encoding", "gzip"));
+        DeliveryClient client = new DeliveryClient(PROJECT_ID);
+        client.setHttpTransport(new RecordingHttpTransport(transport, archive));
+        Assert.assertEquals("on_roasts", client.getItem("on_roasts").getItem().getSystem().getCodename());
+        Assert.assertEquals("on_roasts", client.getItemAsync("on_roasts").get().getItem().getSystem().getCodename());
+        client.close();
+
+        ReplayHttpTransport replay = new ReplayHttpTransport(archive);
+        replay.setLatencyScale(0);
+        Assert.assertEquals(Arrays.asList(ITEM_URI, ITEM_URI), replay.getRequestUris());
+        List<Long> offsets = replay.getRequestOffsets();
+        Assert.assertEquals(2, offsets.size());
+        Assert.assertTrue(offsets.get(0) >= 0);
+        Assert.assertTrue(offsets.get(1) >= offsets.get(0));
+        client = new DeliveryClient(PROJECT_ID);
+        client.setHttpTransport(replay);
+        Assert.assertEquals("on_roasts", client.getItem("on_roasts").getItem().getSystem().getCodename());
+        Assert.assertEquals("on_roasts", client.getItemAsync("on_roasts").get().getItem().getSystem().getCodename());
+        try {
+            client.getItem("missing");
+            Assert.fail("Expected KenticoErrorException");
+        } catch (KenticoErrorException e) {
+            Assert.assertEquals(100, e.getKenticoError().getErrorCode());
+        }
+        Assert.assertEquals(3, replay.getRequestCount());
+        client.close();
+    }
+
+    @Test
+    public void testReplaysFailures() throws Exception {
+        Path archive = temporaryFolder.newFile("failures.bin").toPath();
+        HttpTransport failing = new HttpTransport() {
+            @Override
+            public HttpResponse execute(HttpUriRequest request) throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public void close() {
+                //Nothing to release
+            }
+        };
+        try (RecordingHttpTransport recording = new RecordingHttpTransport(failing, archive)) {
+            recording.execute(new HttpGet(ITEM_URI));
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertEquals("Connection reset", e.getMessage());
+        }
+
+        try (ReplayHttpTransport replay = new ReplayHttpTransport(archive)) {
+            replay.executeAsync(new HttpGet(ITEM_URI)).get();
+            Assert.fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+            Assert.assertEquals("Connection reset", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testScaledLatency() throws Exception {
+        Path archive = temporaryFolder.newFile("latency.bin").toPath();
+        HttpTransport slow = new HttpTransport() {
+            @Override
+            public HttpResponse execute(HttpUriRequest request) throws IOException {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return new InMemoryHttpTransport().execute(request);
+            }
+
+            @Override
+            public void close() {
+                //Nothing to release
+            }
+        };
+        try (RecordingHttpTransport recording = new RecordingHttpTransport(slow, archive)) {
+            recording.execute(new HttpGet(ITEM_URI));
+        }
+
+        try (ReplayHttpTransport replay = new ReplayHttpTransport(archive)) {
+            replay.setLatencyScale(0.5);
+            long start = java.lang.System.nanoTime();
+            Assert.assertEquals(404, replay.executeAsync(new HttpGet(ITEM_URI)).get().getStatusLine().getStatusCode());
+            long elapsedMillis = (java.lang.System.nanoTime() - start) / 1000000;
+            Assert.assertTrue(elapsedMillis >= 50);
+            Assert.assertTrue(elapsedMillis < 100);
+        }
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = this.getClass().getResourceAsStream(name)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+}
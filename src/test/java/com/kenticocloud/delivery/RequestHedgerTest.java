@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RequestHedgerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testHedgeDelayIsPercentileOfLatencies() {
+        RequestHedger requestHedger = new RequestHedger();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setHedgeMinDelayMillis(0);
+        Assert.assertEquals(-1, requestHedger.getHedgeDelayNanos(deliveryOptions));
+
+        for (int i = 1; i <= 100; i++) {
+            requestHedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(95), requestHedger.getHedgeDelayNanos(deliveryOptions));
+        deliveryOptions.setHedgePercentile(0.5);
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), requestHedger.getHedgeDelayNanos(deliveryOptions));
+        deliveryOptions.setHedgeMinDelayMillis(60);
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(60), requestHedger.getHedgeDelayNanos(deliveryOptions));
+    }
+
+    @Test
+    public void testSlowRequestIsHedged() throws Exception {
+        RequestHedger requestHedger = warmedUp();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setHedgeMinDelayMillis(1);
+        deliveryOptions.setHedgeMaxFraction(1);
+        StubTransport transport = new StubTransport();
+        transport.responses.add(new CompletableFuture<>());
+        transport.responses.add(CompletableFuture.completedFuture(ok()));
+
+        HttpResponse response = requestHedger.execute(
+                transport, new HttpGet("https://example.com/items"), deliveryOptions, scheduler).get(5, TimeUnit.SECONDS);
+        Assert.assertSame(transport.responses.get(1).get(), response);
+        Assert.assertEquals(1, requestHedger.getHedgeCount());
+
+        //The first attempt keeps running, and its latency is recorded once it completes
+        Assert.assertFalse(transport.responses.get(0).isCancelled());
+        Assert.assertEquals(100, getRecordedCount(requestHedger));
+        transport.responses.get(0).complete(ok());
+        Assert.assertEquals(101, getRecordedCount(requestHedger));
+    }
+
+    @Test
+    public void testHedgeIsSkippedWithoutSpareCapacity() throws Exception {
+        RequestHedger requestHedger = warmedUp();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setHedgeMinDelayMillis(1);
+        deliveryOptions.setHedgeMaxFraction(1);
+        CompletableFuture<HttpResponse> slow = new CompletableFuture<>();
+        CountDownLatch hedgeDeclined = new CountDownLatch(1);
+
+        CompletableFuture<HttpResponse> result = requestHedger.execute((request, hedge) -> {
+            if (hedge) {
+                hedgeDeclined.countDown();
+                return null;
+            }
+            return slow;
+        }, new HttpGet("https://example.com/items"), deliveryOptions, scheduler);
+        Assert.assertTrue(hedgeDeclined.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(result.isDone());
+        slow.complete(ok());
+        Assert.assertSame(slow.get(), result.get());
+        Assert.assertEquals(0, requestHedger.getHedgeCount());
+    }
+
+    @Test
+    public void testBudgetLimitsHedges() throws Exception {
+        RequestHedger requestHedger = warmedUp();
+        DeliveryOptions deliveryOptions = new DeliveryOptions();
+        deliveryOptions.setHedgeMinDelayMillis(1);
+        deliveryOptions.setHedgeMaxFraction(0);
+        StubTransport transport = new StubTransport();
+        CompletableFuture<HttpResponse> slow = new CompletableFuture<>();
+        transport.responses.add(slow);
+
+        CompletableFuture<HttpResponse> result = requestHedger.execute(
+                transport, new HttpGet("https://example.com/items"), deliveryOptions, scheduler);
+        Thread.sleep(50);
+        Assert.assertFalse(result.isDone());
+        slow.complete(ok());
+        Assert.assertSame(slow.get(), result.get());
+        Assert.assertEquals(1, transport.requests);
+        Assert.assertEquals(0, requestHedger.getHedgeCount());
+    }
+
+    private static long getRecordedCount(RequestHedger requestHedger) throws Exception {
+        Field recordedCount = RequestHedger.class.getDeclaredField("recordedCount");
+        recordedCount.setAccessible(true);
+        return ((AtomicLong) recordedCount.get(requestHedger)).get();
+    }
+
+    private static RequestHedger warmedUp() {
+        RequestHedger requestHedger = new RequestHedger();
+        for (int i = 0; i < 100; i++) {
+            requestHedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return requestHedger;
+    }
+
+    private static HttpResponse ok() {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+    }
+
+    private static class StubTransport implements RequestHedger.Sender {
+
+        final List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        volatile int requests;
+
+        @Override
+        public synchronized CompletableFuture<HttpResponse> send(HttpUriRequest request, boolean hedge) {
+            return responses.get(requests++);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+    @Test
+    public void testResultsAreTiedToTheirSource() {
+        ResultCache resultCache = new ResultCache();
+        Object source = new Object();
+        resultCache.put("items", String.class, source, "result");
+        Assert.assertEquals("result", resultCache.get("items", String.class, source));
+        Assert.assertNull(resultCache.get("items", Integer.class, source));
+        Assert.assertNull(resultCache.get("items", String.class, new Object()));
+        Assert.assertEquals(1, resultCache.getHitCount());
+        Assert.assertEquals(2, resultCache.getMissCount());
+
+        resultCache.invalidateAll();
+        Assert.assertNull(resultCache.get("items", String.class, source));
+    }
+
+    @Test
+    public void testMaximumSize() {
+        ResultCache resultCache = new ResultCache(10);
+        Object source = new Object();
+        for (int i = 0; i < 50; i++) {
+            resultCache.put("items/" + i, String.class, source, "result");
+        }
+        Assert.assertEquals(10, resultCache.getSize());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        ResultCache resultCache = new ResultCache(2);
+        Object source = new Object();
+        resultCache.put("a", String.class, source, "a");
+        Thread.sleep(1);
+        resultCache.put("b", String.class, source, "b");
+        Thread.sleep(1);
+        Assert.assertEquals("a", resultCache.get("a", String.class, source));
+        Thread.sleep(1);
+        resultCache.put("c", String.class, source, "c");
+        Assert.assertEquals(2, resultCache.getSize());
+        Assert.assertEquals("a", resultCache.get("a", String.class, source));
+        Assert.assertNull(resultCache.get("b", String.class, source));
+    }
+
+    @Test
+    public void testDropsResultsOfCollectedSources() throws Exception {
+        ResultCache resultCache = new ResultCache();
+        Object source = new Object();
+        resultCache.put("a", String.class, new Object(), "a");
+        for (int i = 0; i < 100 && resultCache.getSize() > 1; i++) {
+            java.lang.System.gc();
+            Thread.sleep(10);
+            resultCache.put("b", String.class, source, "b");
+        }
+        Assert.assertEquals(1, resultCache.getSize());
+    }
+}
@@ -57,6 +57,24 @@ public class RichTextElementConverterTest {
                 converted.getValue());
     }
 
+    @Test
+    public void testConvertLeavesOriginalUntouched() {
+        RichTextElementConverter converter = new RichTextElementConverter(
+                link -> link.getUrlSlug(),
+                () -> "/404",
+                null,
+                null,
+                null);
+        RichTextElement original = new RichTextElement();
+        String value = "<p><a href=\"\" data-item-id=\"not-found\">box</a></p>";
+        original.setValue(value);
+        original.setLinks(new HashMap<>());
+        RichTextElement converted = converter.convert(original);
+        Assert.assertEquals("<p><a href=\"/404\" data-item-id=\"not-found\">box</a></p>", converted.getValue());
+        Assert.assertNotSame(original, converted);
+        Assert.assertEquals(value, original.getValue());
+    }
+
     @Test
     public void testModularContentReplacement() {
         StronglyTypedContentItemConverter stronglyTypedContentItemConverter = new StronglyTypedContentItemConverter();
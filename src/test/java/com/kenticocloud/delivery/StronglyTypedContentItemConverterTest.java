@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class StronglyTypedContentItemConverterTest {
+
+    @Test
+    public void testSharedModularContentIsConvertedOnce() {
+        Map<String, ContentItem> modularContent = new HashMap<>();
+        modularContent.put("shared", page("shared"));
+        modularContent.put("left", page("left", "shared"));
+        modularContent.put("right", page("right", "shared"));
+        ContentItem root = page("root", "left", "right");
+
+        StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+        converter.registerType(Page.class);
+        List<Page> pages = converter.convert(
+                Arrays.asList(root, modularContent.get("left")), modularContent, Page.class);
+        Page left = pages.get(1);
+        Assert.assertEquals(2, pages.get(0).getChildren().size());
+        for (Page child : pages.get(0).getChildren()) {
+            Assert.assertSame(left.getChildren().get(0), child.getChildren().get(0));
+        }
+        Assert.assertEquals("shared", left.getChildren().get(0).getSystem().getCodename());
+    }
+
+    @Test
+    public void testCyclesAreCut() {
+        Map<String, ContentItem> modularContent = new HashMap<>();
+        modularContent.put("first", page("first", "second"));
+        modularContent.put("second", page("second", "first"));
+
+        StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+        converter.registerType(Page.class);
+        Page first = converter.convert(modularContent.get("first"), modularContent, Page.class);
+        Page second = first.getChildren().get(0);
+        Assert.assertEquals("second", second.getSystem().getCodename());
+        //The first item is converted once more under the second, where the second is hidden
+        Page nested = second.getChildren().get(0);
+        Assert.assertEquals("first", nested.getSystem().getCodename());
+        Assert.assertTrue(nested.getChildren().isEmpty());
+    }
+
+    @Test
+    public void testLazyModularContent() {
+        Map<String, ContentItem> modularContent = new HashMap<>();
+        modularContent.put("first", page("first"));
+        modularContent.put("second", page("second"));
+        modularContent.put("featured", page("featured"));
+        ContentItem root = page("root", "first", "second");
+
+        StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+        converter.registerType(Page.class);
+        converter.setLazyModularContent(true);
+        int created = Page.created.get();
+        Page page = converter.convert(root, modularContent, Page.class);
+        Assert.assertEquals(created + 1, Page.created.get());
+
+        Assert.assertEquals(2, page.getChildren().size());
+        Assert.assertEquals(created + 1, Page.created.get());
+        Page child = page.getChildren().get(0);
+        Assert.assertSame(child, page.getChildren().get(0));
+        Assert.assertEquals(created + 2, Page.created.get());
+        try {
+            page.getChildren().clear();
+            Assert.fail("Expected the lazy list to be read-only");
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+
+        Page featured = page.getFeatured().get();
+        Assert.assertEquals("featured", featured.getSystem().getCodename());
+        Assert.assertSame(featured, page.getFeatured().get());
+        Assert.assertEquals(created + 3, Page.created.get());
+    }
+
+    @Test
+    public void testParallelConversionKeepsOrder() throws Exception {
+        Map<String, ContentItem> modularContent = new HashMap<>();
+        modularContent.put("shared", page("shared"));
+        List<ContentItem> items = new ArrayList<>();
+        for (int i = 0; i < StronglyTypedContentItemConverter.PARALLEL_CONVERSION_THRESHOLD * 10; i++) {
+            items.add(page("page_" + i, "shared"));
+        }
+
+        StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+        converter.registerType(Page.class);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            converter.setConversionExecutor(executor);
+            List<Page> pages = converter.convert(items, modularContent, Page.class);
+            Assert.assertEquals(items.size(), pages.size());
+            for (int i = 0; i < pages.size(); i++) {
+                Assert.assertEquals("page_" + i, pages.get(i).getSystem().getCodename());
+                Assert.assertEquals("shared", pages.get(i).getChildren().get(0).getSystem().getCodename());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelConversionFromConversionExecutorThreads() throws Exception {
+        Map<String, ContentItem> modularContent = new HashMap<>();
+        List<ContentItem> items = new ArrayList<>();
+        for (int i = 0; i < StronglyTypedContentItemConverter.PARALLEL_CONVERSION_THRESHOLD * 10; i++) {
+            items.add(page("page_" + i));
+        }
+
+        StronglyTypedContentItemConverter converter = new StronglyTypedContentItemConverter();
+        converter.registerType(Page.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            converter.setConversionExecutor(executor);
+            List<Future<List<Page>>> conversions = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                conversions.add(executor.submit(() -> converter.convert(items, modularContent, Page.class)));
+            }
+            for (Future<List<Page>> conversion : conversions) {
+                List<Page> pages = conversion.get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(items.size(), pages.size());
+                Assert.assertEquals("page_" + (items.size() - 1), pages.get(items.size() - 1).getSystem().getCodename());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ContentItem page(String codename, String... children) {
+        System system = new System();
+        system.setCodename(codename);
+        system.setType("page");
+        ModularContentElement childrenElement = new ModularContentElement();
+        childrenElement.setValue(Arrays.asList(children));
+        ContentItem item = new ContentItem();
+        item.setSystem(system);
+        item.setElements(new HashMap<>(Collections.singletonMap("children", childrenElement)));
+        return item;
+    }
+
+    @ContentItemMapping("page")
+    public static class Page {
+
+        static final AtomicInteger created = new AtomicInteger();
+
+        System system;
+
+        @ContentItemMapping("children")
+        List<Page> children;
+
+        Supplier<Page> featured;
+
+        public Page() {
+            created.incrementAndGet();
+        }
+
+        public System getSystem() {
+            return system;
+        }
+
+        public void setSystem(System system) {
+            this.system = system;
+        }
+
+        public List<Page> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<Page> children) {
+            this.children = children;
+        }
+
+        public Supplier<Page> getFeatured() {
+            return featured;
+        }
+
+        public void setFeatured(Supplier<Page> featured) {
+            this.featured = featured;
+        }
+    }
+}
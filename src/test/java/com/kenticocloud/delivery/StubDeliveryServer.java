@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kenticocloud.delivery;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.protocol.HttpRequestHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the Delivery API serving the responses recorded in the test resources, with configurable
+ * latency and injected server errors.
+ * <p>
+ * Listings and single items, types and taxonomy groups are served for any codename:
+ * <pre>
+ * StubDeliveryServer server = new StubDeliveryServer(projectId);
+ * server.setLatency(20, 10);
+ * server.setErrorRate(0.01);
+ * server.start();
+ * deliveryOptions.setProductionEndpoint(server.getProductionEndpoint());
+ * </pre>
+ */
+public class StubDeliveryServer implements Closeable {
+
+    private final String projectId;
+    private final ServerBootstrap serverBootstrap;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private HttpServer server;
+
+    public StubDeliveryServer(String projectId) throws IOException {
+        this.projectId = projectId;
+        serverBootstrap = ServerBootstrap.bootstrap()
+                .setSocketConfig(SocketConfig.custom().setSoTimeout(15000).build())
+                .setServerInfo("StubDeliveryServer/1.1");
+        register("items", "SampleContentItemListWithModularContent.json");
+        register("items/*", "SampleContentItem.json");
+        register("types", "SampleContentTypeList.json");
+        register("types/*", "SampleContentType.json");
+        register("taxonomies", "SampleTaxonomyGroupListingResponse.json");
+        register("taxonomies/*", "SampleTaxonomyGroup.json");
+    }
+
+    /**
+     * Serves a recorded response for a path of the project.  The most specific pattern wins.
+     * @param pathPattern The path below the project ID, optionally ending with {@code *}
+     * @param resource The name of the recorded response in the test resources
+     * @throws IOException Thrown if the recorded response cannot be read
+     */
+    public void register(String pathPattern, String resource) throws IOException {
+        byte[] body = readResource(resource);
+        serverBootstrap.registerHandler(String.format("/%s/%s", projectId, pathPattern), handler(body));
+    }
+
+    /**
+     * Sets how long the server waits before responding.
+     * @param latencyMillis The minimum latency in milliseconds
+     * @param latencyJitterMillis The maximum random latency added on top, in milliseconds
+     */
+    public void setLatency(long latencyMillis, long latencyJitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * Sets the fraction of requests answered with {@code 503 Service Unavailable}.
+     * @param errorRate The error rate, between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public HttpHost start() throws IOException {
+        server = serverBootstrap.create();
+        server.start();
+        return new HttpHost("localhost", server.getLocalPort(), "http");
+    }
+
+    /**
+     * Gets the value to pass to {@link DeliveryOptions#setProductionEndpoint(String)}.
+     * @return the production endpoint of the started server
+     */
+    public String getProductionEndpoint() {
+        return String.format("http://localhost:%d/%%s", server.getLocalPort());
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private HttpRequestHandler handler(byte[] body) {
+        return (request, response, context) -> {
+            requestCount.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMillis + (latencyJitterMillis > 0 ? random.nextLong(latencyJitterMillis + 1) : 0);
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while delaying a response");
+                }
+            }
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                errorCount.incrementAndGet();
+                response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        };
+    }
+
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream inputStream = StubDeliveryServer.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException(String.format("Missing recorded response %s", resource));
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}